@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs another ResultSink on a thread of its own. Results are handed over
+ * through a bounded queue in chunks, so the thread producing them only
+ * waits when the writer has fallen a whole queue behind, and never for
+ * formatting or for the output itself.
+ *
+ * If the underlying sink fails, whether by an IOException or a
+ * RuntimeException, the writer thread keeps taking chunks off the queue
+ * without writing them, so producers never block on it, and the failure is
+ * thrown, as the cause of an IOException, from the next call made on the
+ * AsyncSink.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class AsyncSink implements ResultSink {
+
+    private static final int CHUNK = 1024;
+
+    /*
+    Item is one entry on the queue: a chunk of results, a flush request to
+    count down once everything before it is written, or the stop signal.
+    */
+    private static final class Item {
+
+        private final List<GameResult> results;
+        private final CountDownLatch flushed;
+
+        Item(List<GameResult> results, CountDownLatch flushed) {
+            this.results = results;
+            this.flushed = flushed;
+        }
+    }
+
+    private static final Item STOP = new Item(null, null);
+
+    private ResultSink sink;
+    private BlockingQueue<Item> queue;
+    private Thread writer;
+    private List<GameResult> pending = new ArrayList<>(CHUNK);
+    private volatile Exception failure;
+
+    /**
+     * Creates an AsyncSink and starts its writer thread.
+     *
+     * @param sink the sink to write to; closed when the AsyncSink is
+     * @param capacity how many chunks may wait to be written before
+     *        producers are made to wait
+     */
+    public AsyncSink(ResultSink sink, int capacity) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::drain, "AsyncSink writer");
+        writer.start();
+    }
+
+    private void drain() {
+        try {
+            for (Item item = queue.take(); item != STOP;
+                item = queue.take()) {
+                try {
+                    if (failure != null) {
+                        continue;
+                    } else if (item.results != null) {
+                        sink.writeAll(item.results);
+                    } else {
+                        sink.flush();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                } finally {
+                    if (item.flushed != null) {
+                        item.flushed.countDown();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void write(GameResult result) throws IOException {
+        pending.add(result);
+        if (pending.size() == CHUNK) {
+            handOver();
+        }
+    }
+
+    /**
+     * Queues a whole chunk at once. results must not be changed afterwards.
+     */
+    @Override
+    public void writeAll(List<GameResult> results) throws IOException {
+        handOver();
+        put(new Item(results, null));
+    }
+
+    private void handOver() throws IOException {
+        if (!pending.isEmpty()) {
+            put(new Item(pending, null));
+            pending = new ArrayList<>(CHUNK);
+        }
+    }
+
+    private void put(Item item) throws IOException {
+        checkFailure();
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while queueing results", e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("result writer failed", failure);
+        }
+    }
+
+    /**
+     * Waits until everything written so far has been written and flushed by
+     * the underlying sink.
+     */
+    @Override
+    public void flush() throws IOException {
+        handOver();
+        CountDownLatch flushed = new CountDownLatch(1);
+        put(new Item(null, flushed));
+        try {
+            flushed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while flushing results", e);
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                queue.put(STOP);
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One game in the compact binary format: the seven tag roster and the moves
+ * as 16-bit values packed as in Move. A game is converted from PGN once,
+ * checking every move on the way, and afterwards replays without reading
+ * any SAN: each move is played straight from its squares.
+ *
+ * A game is written as
+ *
+ * <pre>
+ * 7 tags   each a 2-byte length and that many bytes of UTF-8, in the
+ *          order of PgnReader.SEVEN_TAG_ROSTER
+ * 2 bytes  the number of plies
+ * 2 bytes  per ply, the packed move
+ * </pre>
+ *
+ * so a 40-move game with a typical header takes about 250 bytes, against
+ * 600 or more as PGN.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class BinaryGame {
+
+    /**
+     * The longest game the format can hold.
+     */
+    public static final int MAX_PLIES = 0xffff;
+
+    private String[] tags;
+    private int[] moves;
+
+    /**
+     * Creates a BinaryGame with all required parameters.
+     *
+     * @param tags the values of the seven tag roster, in roster order
+     * @param moves the moves of the game, packed as in Move
+     */
+    public BinaryGame(String[] tags, int[] moves) {
+        if (tags.length != PgnReader.SEVEN_TAG_ROSTER.length) {
+            throw new IllegalArgumentException("need "
+                + PgnReader.SEVEN_TAG_ROSTER.length + " tags");
+        }
+        if (moves.length > MAX_PLIES) {
+            throw new IllegalArgumentException("game too long: "
+                + moves.length + " plies");
+        }
+        this.tags = tags.clone();
+        this.moves = moves.clone();
+    }
+
+    /**
+     * Converts a PGN game, replaying it to check that every move is legal.
+     * Tags missing from the game are stored as "?", as PGN export does.
+     *
+     * @param game the PGN text of a game
+     * @return the game in binary form
+     * @throws IllegalArgumentException if a move cannot be played
+     */
+    public static BinaryGame fromPgn(CharSequence game) {
+        PgnTags parsed = PgnTags.parse(game);
+        String[] tags = new String[PgnReader.SEVEN_TAG_ROSTER.length];
+        for (int i = 0; i < tags.length; i++) {
+            String value = parsed.get(PgnReader.SEVEN_TAG_ROSTER[i]);
+            tags[i] = (value == null) ? "?" : value;
+        }
+        Position position = new Position();
+        int[] moves = new int[128];
+        int plies = 0;
+        PgnLexer lexer = new PgnLexer(game);
+        for (PgnLexer.Token t = lexer.next(); t != PgnLexer.Token.END;
+            t = lexer.next()) {
+            if (t == PgnLexer.Token.MOVE && lexer.depth() == 0) {
+                if (plies == moves.length) {
+                    moves = Arrays.copyOf(moves, plies * 2);
+                }
+                moves[plies++] = position.playSan(lexer.text(), lexer.start(),
+                    lexer.end());
+            }
+        }
+        return new BinaryGame(tags, Arrays.copyOf(moves, plies));
+    }
+
+    /**
+     * @param tagName one of the seven tag roster
+     * @return the tag's value
+     * @throws IllegalArgumentException if tagName is not in the roster
+     */
+    public String tag(String tagName) {
+        for (int i = 0; i < tags.length; i++) {
+            if (PgnReader.SEVEN_TAG_ROSTER[i].equals(tagName)) {
+                return tags[i];
+            }
+        }
+        throw new IllegalArgumentException("not in the seven tag roster: "
+            + tagName);
+    }
+
+    /**
+     * @return the number of plies in the game
+     */
+    public int plies() {
+        return moves.length;
+    }
+
+    /**
+     * @param ply a ply from 0 to plies() - 1
+     * @return the move played at ply, packed as in Move
+     */
+    public int move(int ply) {
+        return moves[ply];
+    }
+
+    /**
+     * Plays the moves on a new Position. No SAN is read and no legality is
+     * checked, since both were done when the game was converted.
+     *
+     * @return the position at the end of the game
+     */
+    public Position replay() {
+        Position position = new Position();
+        for (int move : moves) {
+            position.play(move);
+        }
+        return position;
+    }
+
+    /**
+     * @return the number of bytes write will produce
+     */
+    public int encodedSize() {
+        int size = 2 + 2 * moves.length;
+        for (String tag : tags) {
+            size += 2 + tag.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    /**
+     * @param out where the game is written
+     * @throws IOException if out cannot be written
+     * @throws IllegalArgumentException if a tag is longer than 65535 bytes
+     */
+    public void write(DataOutput out) throws IOException {
+        for (String tag : tags) {
+            byte[] bytes = tag.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xffff) {
+                throw new IllegalArgumentException("tag too long");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        out.writeShort(moves.length);
+        for (int move : moves) {
+            out.writeShort(move);
+        }
+    }
+
+    /**
+     * @param in where the game is read from, positioned at its start
+     * @return the game
+     * @throws IOException if in cannot be read, e.g. because it ends
+     *         partway through the game
+     */
+    public static BinaryGame read(DataInput in) throws IOException {
+        String[] tags = new String[PgnReader.SEVEN_TAG_ROSTER.length];
+        for (int i = 0; i < tags.length; i++) {
+            byte[] bytes = new byte[in.readUnsignedShort()];
+            in.readFully(bytes);
+            tags[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int[] moves = new int[in.readUnsignedShort()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = in.readUnsignedShort();
+        }
+        return new BinaryGame(tags, moves);
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the games of a binary game file, as written by BinaryGameWriter,
+ * one at a time.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class BinaryGameReader implements Iterator<BinaryGame>, Closeable {
+
+    private DataInputStream in;
+
+    /**
+     * Creates a BinaryGameReader and checks the file header.
+     *
+     * @param in the binary game file, positioned at its start
+     * @throws IOException if in cannot be read or is not a binary game file
+     */
+    public BinaryGameReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (this.in.readLong() != BinaryGameWriter.MAGIC) {
+            throw new IOException("Not a binary game file");
+        }
+    }
+
+    /**
+     * Opens the binary game file at path.
+     *
+     * @param path the file to read
+     * @return a reader over the file's games
+     * @throws IOException if the file cannot be opened or is not a binary
+     *         game file
+     */
+    public static BinaryGameReader open(Path path) throws IOException {
+        InputStream stream = Files.newInputStream(path);
+        try {
+            return new BinaryGameReader(stream);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            in.mark(1);
+            boolean more = in.read() >= 0;
+            in.reset();
+            return more;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public BinaryGame next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return BinaryGame.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
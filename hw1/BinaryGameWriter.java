@@ -0,0 +1,140 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes games to a binary game file: an 8-byte magic number followed by
+ * the games one after another, each as BinaryGame.write lays it out. The
+ * writer keeps count of the bytes written so the offset of every game can
+ * be recorded for an index.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class BinaryGameWriter implements Closeable {
+
+    /**
+     * The first eight bytes of every binary game file.
+     */
+    public static final long MAGIC = 0x4348455353424731L;
+
+    private DataOutputStream out;
+    // set when writing to a file, so sync can force it to disk
+    private FileChannel channel;
+    private long offset;
+
+    /**
+     * Creates a BinaryGameWriter and writes the file header to out.
+     *
+     * @param out where the file is written
+     * @throws IOException if the header cannot be written
+     */
+    public BinaryGameWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out,
+            1 << 16));
+        this.out.writeLong(MAGIC);
+        offset = 8;
+    }
+
+    /**
+     * Creates, or replaces, a binary game file at path.
+     *
+     * @param path the file to write
+     * @return a writer for the file
+     * @throws IOException if the file cannot be created
+     */
+    public static BinaryGameWriter create(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        BinaryGameWriter writer =
+            new BinaryGameWriter(Channels.newOutputStream(channel));
+        writer.channel = channel;
+        return writer;
+    }
+
+    /**
+     * Reopens a binary game file to add more games, as when an interrupted
+     * conversion is resumed. Anything after length, such as a game that was
+     * only partly written, is cut off.
+     *
+     * @param path the file to continue
+     * @param length the offset to continue writing at, normally a value
+     *        offset() returned before
+     * @return a writer that appends at length
+     * @throws IOException if the file cannot be opened or is shorter than
+     *         length
+     */
+    public static BinaryGameWriter resume(Path path, long length)
+        throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        if (channel.size() < length || length < 8) {
+            channel.close();
+            throw new IOException("Cannot resume " + path + " at " + length);
+        }
+        channel.truncate(length);
+        channel.position(length);
+        BinaryGameWriter writer = new BinaryGameWriter();
+        writer.out = new DataOutputStream(new BufferedOutputStream(
+            Channels.newOutputStream(channel), 1 << 16));
+        writer.channel = channel;
+        writer.offset = length;
+        return writer;
+    }
+
+    private BinaryGameWriter() {
+    }
+
+    /**
+     * @param game the game to append
+     * @return the offset in the file at which the game starts
+     * @throws IOException if the game cannot be written
+     */
+    public long write(BinaryGame game) throws IOException {
+        long start = offset;
+        game.write(out);
+        offset += game.encodedSize();
+        return start;
+    }
+
+    /**
+     * @return the number of bytes written so far, header included, which is
+     *         also the offset the next game will be written at
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Pushes buffered games through to the underlying stream.
+     *
+     * @throws IOException if they cannot be written
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes buffered games and, when writing to a file, forces them to
+     * disk, so everything up to offset() survives a crash.
+     *
+     * @throws IOException if they cannot be written
+     */
+    public void sync() throws IOException {
+        out.flush();
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
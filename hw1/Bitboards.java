@@ -0,0 +1,154 @@
+/**
+ * Precomputed attack tables for a 64-bit bitboard. Square a1 is bit 0, b1 is
+ * bit 1 and so on up to h8, which is bit 63, so a square's index is
+ * rank * 8 + file with both counted from zero.
+ *
+ * Knight, king and pawn attacks are read straight out of tables. Sliding
+ * pieces use one precomputed ray per direction: the ray is cut off at the
+ * first blocker by clearing the ray that continues behind it, which costs a
+ * bit scan and an xor instead of a walk along the board.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class Bitboards {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long RANK_1 = 0xffL;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    /**
+     * PAWN_ATTACKS[color][square] holds the squares a pawn of that color on
+     * square attacks. Color 0 is white and 1 is black, as in Position.
+     */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // north, north-east, east, north-west grow the square index; the other
+    // four shrink it
+    private static final int[] FILE_STEP = {0, 1, 1, -1, 0, -1, -1, 1};
+    private static final int[] RANK_STEP = {1, 1, 0, 1, -1, -1, 0, -1};
+    private static final long[][] RAYS = new long[8][64];
+
+    /**
+     * BETWEEN[a][b] holds the squares strictly between a and b when they
+     * share a rank, file or diagonal, and is empty otherwise.
+     */
+    public static final long[][] BETWEEN = new long[64][64];
+    /**
+     * LINE[a][b] holds the whole rank, file or diagonal through a and b,
+     * edge to edge, and is empty if they do not share one.
+     */
+    public static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int file = sq & 7;
+            int rank = sq >>> 3;
+            KNIGHT_ATTACKS[sq] = steps(file, rank, new int[][] {{1, 2},
+                {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1},
+                {-1, 2}});
+            KING_ATTACKS[sq] = steps(file, rank, new int[][] {{0, 1}, {1, 1},
+                {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}});
+            PAWN_ATTACKS[0][sq] = steps(file, rank, new int[][] {{-1, 1},
+                {1, 1}});
+            PAWN_ATTACKS[1][sq] = steps(file, rank, new int[][] {{-1, -1},
+                {1, -1}});
+            for (int dir = 0; dir < 8; dir++) {
+                int f = file + FILE_STEP[dir];
+                int r = rank + RANK_STEP[dir];
+                while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                    RAYS[dir][sq] |= 1L << (r * 8 + f);
+                    f += FILE_STEP[dir];
+                    r += RANK_STEP[dir];
+                }
+            }
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            for (int dir = 0; dir < 8; dir++) {
+                // directions 0-3 and 4-7 point opposite ways pairwise
+                int opposite = (dir + 4) % 8;
+                long line = RAYS[dir][sq] | RAYS[opposite][sq] | (1L << sq);
+                for (long ray = RAYS[dir][sq]; ray != 0; ray &= ray - 1) {
+                    int target = Long.numberOfTrailingZeros(ray);
+                    BETWEEN[sq][target] = RAYS[dir][sq]
+                        & RAYS[opposite][target];
+                    LINE[sq][target] = line;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    private static long steps(int file, int rank, int[][] offsets) {
+        long result = 0L;
+        for (int[] offset : offsets) {
+            int f = file + offset[0];
+            int r = rank + offset[1];
+            if (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                result |= 1L << (r * 8 + f);
+            }
+        }
+        return result;
+    }
+
+    private static long ray(int dir, int sq, long occupied) {
+        long attacks = RAYS[dir][sq];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            int first = (dir < 4) ? Long.numberOfTrailingZeros(blockers)
+                : 63 - Long.numberOfLeadingZeros(blockers);
+            attacks ^= RAYS[dir][first];
+        }
+        return attacks;
+    }
+
+    /**
+     * @param sq the square the rook stands on
+     * @param occupied every occupied square
+     * @return the squares a rook on sq attacks, up to and including the
+     *         first piece in each direction
+     */
+    public static long rookAttacks(int sq, long occupied) {
+        return ray(0, sq, occupied) | ray(2, sq, occupied)
+            | ray(4, sq, occupied) | ray(6, sq, occupied);
+    }
+
+    /**
+     * @param sq the square the bishop stands on
+     * @param occupied every occupied square
+     * @return the squares a bishop on sq attacks, up to and including the
+     *         first piece in each direction
+     */
+    public static long bishopAttacks(int sq, long occupied) {
+        return ray(1, sq, occupied) | ray(3, sq, occupied)
+            | ray(5, sq, occupied) | ray(7, sq, occupied);
+    }
+
+    /**
+     * @param sq the square the queen stands on
+     * @param occupied every occupied square
+     * @return the squares a queen on sq attacks
+     */
+    public static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    /**
+     * @param file a file from 0 (a) to 7 (h)
+     * @return every square on the file
+     */
+    public static long fileMask(int file) {
+        return FILE_A << file;
+    }
+
+    /**
+     * @param rank a rank from 0 (first rank) to 7 (eighth rank)
+     * @return every square on the rank
+     */
+    public static long rankMask(int rank) {
+        return RANK_1 << (rank * 8);
+    }
+}
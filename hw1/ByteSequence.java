@@ -0,0 +1,88 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only CharSequence view over a range of bytes in a ByteBuffer. Each
+ * byte is one char (ISO 8859-1, the PGN export character set), so movetext
+ * can be scanned in place without decoding it into a String first.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class ByteSequence implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Creates a ByteSequence with all required parameters.
+     *
+     * @param buffer the bytes to view. Only absolute gets are used, so the
+     *        buffer's position and limit are left alone.
+     * @param offset the index of the first byte in the view
+     * @param length the number of bytes in the view
+     */
+    public ByteSequence(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+            throw new IndexOutOfBoundsException("offset " + offset
+                + ", length " + length);
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index);
+        }
+        return (char) (buffer.get(offset + index) & 0xff);
+    }
+
+    /**
+     * @param index the index of the byte to read
+     * @return the unsigned byte at index
+     */
+    public int byteAt(int index) {
+        return buffer.get(offset + index) & 0xff;
+    }
+
+    @Override
+    public ByteSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start
+                + ", end " + end);
+        }
+        return new ByteSequence(buffer, offset + start, end - start);
+    }
+
+    /**
+     * Copies the bytes in [start, end) out of the buffer and decodes them.
+     *
+     * @param start the index of the first byte to decode
+     * @param end the index after the last byte to decode
+     * @param charset the encoding of the bytes
+     * @return the decoded String
+     */
+    public String decode(int start, int end, Charset charset) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(offset + start, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * @return a String containing a copy of the viewed bytes
+     */
+    @Override
+    public String toString() {
+        return decode(0, length, StandardCharsets.ISO_8859_1);
+    }
+}
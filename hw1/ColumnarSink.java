@@ -0,0 +1,162 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes GameResults to a columnar binary file. Results are collected into
+ * row groups, and each row group is written one column at a time: all the
+ * game numbers, then all the Event values, and so on through the FEN. A
+ * reader interested in one column can skip the others, and similar values
+ * stored together compress far better than rows do.
+ *
+ * <pre>
+ * file       8 bytes magic, then row groups until the end
+ * row group  4 bytes row count n, n 8-byte game numbers, then for each of
+ *            the seven tags and the FEN: n 4-byte lengths followed by the
+ *            n values in UTF-8
+ * </pre>
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class ColumnarSink implements ResultSink {
+
+    /**
+     * The first eight bytes of every columnar result file.
+     */
+    public static final long MAGIC = 0x434f4c5245535531L;
+
+    private static final int COLUMNS = PgnReader.SEVEN_TAG_ROSTER.length + 1;
+
+    private DataOutputStream out;
+    private int groupSize;
+    private GameResult[] group;
+    private int rows;
+
+    /**
+     * Creates, or replaces, a columnar result file.
+     *
+     * @param path the file to write
+     * @param groupSize the number of rows per row group
+     * @throws IOException if the file cannot be created
+     */
+    public ColumnarSink(Path path, int groupSize) throws IOException {
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("groupSize must be positive");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(path), 1 << 16));
+        this.groupSize = groupSize;
+        this.group = new GameResult[groupSize];
+        out.writeLong(MAGIC);
+    }
+
+    @Override
+    public void write(GameResult result) throws IOException {
+        group[rows++] = result;
+        if (rows == groupSize) {
+            writeGroup();
+        }
+    }
+
+    private void writeGroup() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        out.writeInt(rows);
+        for (int i = 0; i < rows; i++) {
+            out.writeLong(group[i].game());
+        }
+        byte[][] values = new byte[rows][];
+        for (int column = 0; column < COLUMNS; column++) {
+            for (int i = 0; i < rows; i++) {
+                values[i] = value(group[i], column)
+                    .getBytes(StandardCharsets.UTF_8);
+                out.writeInt(values[i].length);
+            }
+            for (int i = 0; i < rows; i++) {
+                out.write(values[i]);
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            group[i] = null;
+        }
+        rows = 0;
+    }
+
+    private static String value(GameResult result, int column) {
+        return (column < COLUMNS - 1) ? result.tag(column) : result.fen();
+    }
+
+    /**
+     * Writes the rows collected so far as a row group, even if it is not
+     * full, and flushes the file.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeGroup();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeGroup();
+        out.close();
+    }
+
+    /**
+     * Reads a columnar result file back and hands every row to out, e.g. to
+     * turn it into CSV.
+     *
+     * @param path the file to read
+     * @param out receives the rows in file order
+     * @throws IOException if the file cannot be read or is not a columnar
+     *         result file
+     */
+    public static void readAll(Path path, ResultSink out) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Files.newInputStream(path), 1 << 16))) {
+            if (in.readLong() != MAGIC) {
+                throw new IOException("Not a columnar result file: " + path);
+            }
+            while (true) {
+                int rows;
+                try {
+                    rows = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                long[] games = new long[rows];
+                for (int i = 0; i < rows; i++) {
+                    games[i] = in.readLong();
+                }
+                String[][] columns = new String[COLUMNS][rows];
+                int[] lengths = new int[rows];
+                for (String[] column : columns) {
+                    for (int i = 0; i < rows; i++) {
+                        lengths[i] = in.readInt();
+                    }
+                    for (int i = 0; i < rows; i++) {
+                        byte[] bytes = new byte[lengths[i]];
+                        in.readFully(bytes);
+                        column[i] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                }
+                for (int i = 0; i < rows; i++) {
+                    String[] tags = new String[COLUMNS - 1];
+                    for (int c = 0; c < tags.length; c++) {
+                        tags[c] = columns[c][i];
+                    }
+                    out.write(new GameResult(games[i], tags,
+                        columns[COLUMNS - 1][i]));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes GameResults as comma-separated values: a header row, then one row
+ * per game with its number, the seven tag roster and the final FEN. Fields
+ * holding a comma, quote or line break are quoted, with quotes doubled.
+ *
+ * Rows are assembled in a reused StringBuilder and written through a large
+ * buffer, so there is no per-row formatting or system call.
+ *
+ * @see https://tools.ietf.org/html/rfc4180
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class CsvSink implements ResultSink {
+
+    private Writer out;
+    private StringBuilder row = new StringBuilder(256);
+
+    /**
+     * Creates a CsvSink and writes the header row.
+     *
+     * @param out where the rows are written; closed when the sink is
+     * @throws IOException if the header cannot be written
+     */
+    public CsvSink(Writer out) throws IOException {
+        this.out = new BufferedWriter(out, 1 << 16);
+        row.append("Game");
+        for (String tag : PgnReader.SEVEN_TAG_ROSTER) {
+            row.append(',').append(tag);
+        }
+        this.out.append(row.append(",FEN\n"));
+    }
+
+    @Override
+    public void write(GameResult result) throws IOException {
+        row.setLength(0);
+        row.append(result.game());
+        for (int i = 0; i < PgnReader.SEVEN_TAG_ROSTER.length; i++) {
+            appendField(result.tag(i));
+        }
+        appendField(result.fen());
+        out.append(row.append('\n'));
+    }
+
+    private void appendField(String value) {
+        row.append(',');
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
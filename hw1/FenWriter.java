@@ -0,0 +1,107 @@
+/**
+ * Writes a Position in Forsyth-Edwards Notation. The six fields are written
+ * in one pass into a StringBuilder that is kept between calls, so a writer
+ * reused across many positions only allocates the returned String.
+ *
+ * A FenWriter is not thread-safe; give each thread its own.
+ *
+ * @see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c16.1
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class FenWriter {
+
+    private StringBuilder buffer = new StringBuilder(96);
+
+    /**
+     * @param position the position to write
+     * @return the full six-field FEN of position
+     */
+    public String fen(Position position) {
+        buffer.setLength(0);
+        appendFen(position, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * @param position the position to write
+     * @return only the piece placement field of position's FEN
+     */
+    public String placement(Position position) {
+        buffer.setLength(0);
+        appendPlacement(position, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Appends the full six-field FEN of position to out: piece placement,
+     * side to move, castling rights, en passant target square, halfmove clock
+     * and fullmove number.
+     *
+     * @param position the position to write
+     * @param out where the FEN is written
+     */
+    public static void appendFen(Position position, StringBuilder out) {
+        appendPlacement(position, out);
+        out.append(position.sideToMove() == Position.WHITE ? " w " : " b ");
+        int castling = position.castlingRights();
+        if (castling == 0) {
+            out.append('-');
+        } else {
+            if ((castling & Position.WHITE_KINGSIDE) != 0) {
+                out.append('K');
+            }
+            if ((castling & Position.WHITE_QUEENSIDE) != 0) {
+                out.append('Q');
+            }
+            if ((castling & Position.BLACK_KINGSIDE) != 0) {
+                out.append('k');
+            }
+            if ((castling & Position.BLACK_QUEENSIDE) != 0) {
+                out.append('q');
+            }
+        }
+        out.append(' ');
+        int ep = position.epSquare();
+        if (ep < 0) {
+            out.append('-');
+        } else {
+            out.append((char) ('a' + (ep & 7)));
+            out.append((char) ('1' + (ep >>> 3)));
+        }
+        out.append(' ').append(position.halfmoveClock());
+        out.append(' ').append(position.fullmoveNumber());
+    }
+
+    /**
+     * Appends the piece placement field of position's FEN to out, from the
+     * eighth rank down to the first.
+     *
+     * @param position the position to write
+     * @param out where the field is written
+     */
+    public static void appendPlacement(Position position, StringBuilder out) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int spaces = 0;
+            for (int sq = rank * 8; sq < rank * 8 + 8; sq++) {
+                int piece = position.pieceAt(sq);
+                if (piece == Position.EMPTY) {
+                    spaces++;
+                } else {
+                    if (spaces > 0) {
+                        out.append((char) ('0' + spaces));
+                        spaces = 0;
+                    }
+                    out.append(Position.PIECE_CHARS.charAt(piece));
+                }
+            }
+            if (spaces > 0) {
+                out.append((char) ('0' + spaces));
+            }
+            if (rank > 0) {
+                out.append('/');
+            }
+        }
+    }
+}
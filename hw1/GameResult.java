@@ -0,0 +1,71 @@
+/**
+ * What a batch run reports about one game: its number in the input, the
+ * seven tag roster and the FEN of its final position.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class GameResult {
+
+    private final long game;
+    private final String[] tags;
+    private final String fen;
+
+    /**
+     * Creates a GameResult with all required parameters.
+     *
+     * @param game the game's number in the input, counting from 0
+     * @param tags the values of the seven tag roster, in roster order
+     * @param fen the FEN of the final position
+     */
+    public GameResult(long game, String[] tags, String fen) {
+        if (tags.length != PgnReader.SEVEN_TAG_ROSTER.length) {
+            throw new IllegalArgumentException("need "
+                + PgnReader.SEVEN_TAG_ROSTER.length + " tags");
+        }
+        this.game = game;
+        this.tags = tags.clone();
+        this.fen = fen;
+    }
+
+    /**
+     * Replays a game and collects its result.
+     *
+     * @param game the game's number in the input
+     * @param text the PGN text of the game
+     * @param writer the FenWriter to write the final position with
+     * @return the game's result
+     * @throws IllegalArgumentException if a move cannot be played
+     */
+    public static GameResult of(long game, CharSequence text,
+        FenWriter writer) {
+        PgnTags parsed = PgnTags.parse(text);
+        String[] tags = new String[PgnReader.SEVEN_TAG_ROSTER.length];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = parsed.value(PgnReader.SEVEN_TAG_ROSTER[i]);
+        }
+        return new GameResult(game, tags, PgnReader.finalFen(text, writer));
+    }
+
+    /**
+     * @return the game's number in the input, counting from 0
+     */
+    public long game() {
+        return game;
+    }
+
+    /**
+     * @param i an index into PgnReader.SEVEN_TAG_ROSTER
+     * @return the value of that tag, or "NOT GIVEN"
+     */
+    public String tag(int i) {
+        return tags[i];
+    }
+
+    /**
+     * @return the FEN of the final position
+     */
+    public String fen() {
+        return fen;
+    }
+}
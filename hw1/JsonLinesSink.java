@@ -0,0 +1,63 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes GameResults as JSON lines: one object per line, with the game's
+ * number, the seven tag roster and the final FEN as fields.
+ *
+ * @see https://jsonlines.org/
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class JsonLinesSink implements ResultSink {
+
+    private Writer out;
+    private StringBuilder line = new StringBuilder(320);
+
+    /**
+     * Creates a JsonLinesSink.
+     *
+     * @param out where the lines are written; closed when the sink is
+     */
+    public JsonLinesSink(Writer out) {
+        this.out = new BufferedWriter(out, 1 << 16);
+    }
+
+    @Override
+    public void write(GameResult result) throws IOException {
+        line.setLength(0);
+        line.append("{\"Game\":").append(result.game());
+        for (int i = 0; i < PgnReader.SEVEN_TAG_ROSTER.length; i++) {
+            appendField(PgnReader.SEVEN_TAG_ROSTER[i], result.tag(i));
+        }
+        appendField("FEN", result.fen());
+        out.append(line.append("}\n"));
+    }
+
+    private void appendField(String name, String value) {
+        line.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
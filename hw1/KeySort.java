@@ -0,0 +1,78 @@
+/**
+ * Sorts records held as two parallel arrays, a long key and an int value,
+ * by key and then by value. Index builders keep millions of such records and
+ * sorting them in place avoids boxing each one to use a library sort.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class KeySort {
+
+    private KeySort() {
+    }
+
+    /**
+     * Sorts the first size records of keys and values together. Keys are
+     * compared as signed longs.
+     *
+     * @param keys the record keys
+     * @param values the record values, moved along with their keys
+     * @param size the number of records to sort
+     */
+    public static void sort(long[] keys, int[] values, int size) {
+        sort(keys, values, 0, size - 1);
+    }
+
+    /*
+    sort is a plain quicksort on the middle element that recurses into the
+    smaller half, so the stack stays shallow, and finishes short ranges with
+    an insertion sort.
+    */
+    private static void sort(long[] keys, int[] values, int low, int high) {
+        while (high - low > 16) {
+            int mid = (low + high) >>> 1;
+            long pivotKey = keys[mid];
+            int pivotValue = values[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (less(keys[i], values[i], pivotKey, pivotValue)) {
+                    i++;
+                }
+                while (less(pivotKey, pivotValue, keys[j], values[j])) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            if (j - low < high - i) {
+                sort(keys, values, low, j);
+                low = i;
+            } else {
+                sort(keys, values, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && less(keys[j], values[j], keys[j - 1],
+                values[j - 1]); j--) {
+                swap(keys, values, j, j - 1);
+            }
+        }
+    }
+
+    private static boolean less(long keyA, int valueA, long keyB,
+        int valueB) {
+        return keyA < keyB || (keyA == keyB && valueA < valueB);
+    }
+
+    private static void swap(long[] keys, int[] values, int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A PGN file that is memory-mapped instead of read line by line. Opening the
+ * file makes one pass over the mapped bytes to record where each game
+ * starts. Nothing else is decoded until it is asked for: tag values are
+ * found and decoded one at a time, and games and movetext are handed out as
+ * ByteSequence views of the mapping.
+ *
+ * Files larger than one mapping can hold are mapped as several windows. The
+ * windows overlap so that any game shorter than the overlap lies entirely
+ * inside the window it starts in; longer games get a mapping of their own.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class MappedPgnFile implements Closeable {
+
+    private static final long WINDOW = 1L << 30;
+    private static final long OVERLAP = 1L << 24;
+
+    private FileChannel channel;
+    private long size;
+    private MappedByteBuffer[] windows;
+    private long[] gameStarts = new long[16];
+    private int gameCount;
+
+    /**
+     * Maps the file at path and indexes its games.
+     *
+     * @param path the PGN file to map
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedPgnFile(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        int count = (int) ((size + WINDOW - 1) / WINDOW);
+        windows = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * WINDOW;
+            long length = Math.min(WINDOW + OVERLAP, size - start);
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                length);
+        }
+        indexGames();
+    }
+
+    /**
+     * @return the number of games in the file
+     */
+    public int gameCount() {
+        return gameCount;
+    }
+
+    /**
+     * @param game the index of a game in the file
+     * @return the byte offset in the file where the game starts
+     */
+    public long gameOffset(int game) {
+        checkGame(game);
+        return gameStarts[game];
+    }
+
+    /**
+     * @param game the index of a game in the file
+     * @return a view of the game's bytes, tag pairs and movetext included
+     * @throws IOException if a game too long for the shared windows cannot
+     *         be mapped
+     */
+    public ByteSequence game(int game) throws IOException {
+        checkGame(game);
+        long start = gameStarts[game];
+        long end = (game + 1 < gameCount) ? gameStarts[game + 1] : size;
+        long length = end - start;
+        int window = (int) (start / WINDOW);
+        if (end - window * WINDOW <= windows[window].capacity()) {
+            return new ByteSequence(windows[window],
+                (int) (start - window * WINDOW), (int) length);
+        }
+        ByteBuffer own = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            length);
+        return new ByteSequence(own, 0, (int) length);
+    }
+
+    /**
+     * @param game the index of a game in the file
+     * @return a view of the game's movetext, which starts after the last
+     *         tag pair line
+     * @throws IOException if the game cannot be mapped
+     */
+    public ByteSequence movetext(int game) throws IOException {
+        ByteSequence text = game(game);
+        return text.subSequence(tagSectionEnd(text), text.length());
+    }
+
+    /**
+     * Finds the tagName tag pair in a game and decodes only its value.
+     *
+     * @param game the index of a game in the file
+     * @param tagName the name of the tag whose value you want
+     * @return the value in the named tag pair, or "NOT GIVEN" like
+     *         PgnReader.tagValue if the game has no such tag
+     * @throws IOException if the game cannot be mapped
+     */
+    public String tagValue(int game, String tagName) throws IOException {
+        ByteSequence text = game(game);
+        int end = tagSectionEnd(text);
+        int i = 0;
+        while (i < end) {
+            if (text.byteAt(i) == '[' && nameMatches(text, i + 1, tagName)) {
+                int open = i + 1 + tagName.length();
+                while (open < end && text.byteAt(open) != '"') {
+                    open++;
+                }
+                int close = open + 1;
+                while (close < end && text.byteAt(close) != '"') {
+                    if (text.byteAt(close) == '\\') {
+                        close++;
+                    }
+                    close++;
+                }
+                if (close < end) {
+                    return text.decode(open + 1, close,
+                        StandardCharsets.UTF_8);
+                }
+            }
+            while (i < end && text.byteAt(i) != '\n') {
+                i++;
+            }
+            i++;
+        }
+        return "NOT GIVEN";
+    }
+
+    /**
+     * Parses every tag pair of a game at once, for callers that need more
+     * than one or two tags. The tag section is decoded as UTF-8, as tagValue
+     * decodes a single value.
+     *
+     * @param game the index of a game in the file
+     * @return the game's tag pairs
+     * @throws IOException if the game cannot be mapped
+     */
+    public PgnTags tags(int game) throws IOException {
+        ByteSequence text = game(game);
+        return PgnTags.parse(text.decode(0, tagSectionEnd(text),
+            StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkGame(int game) {
+        if (game < 0 || game >= gameCount) {
+            throw new IndexOutOfBoundsException("game " + game);
+        }
+    }
+
+    private static boolean nameMatches(ByteSequence text, int from,
+        String tagName) {
+        int end = from + tagName.length();
+        if (end >= text.length()) {
+            return false;
+        }
+        for (int i = 0; i < tagName.length(); i++) {
+            if (text.byteAt(from + i) != tagName.charAt(i)) {
+                return false;
+            }
+        }
+        int after = text.byteAt(end);
+        return after == ' ' || after == '\t' || after == '"';
+    }
+
+    /*
+    tagSectionEnd returns the index of the first line of a game that is not a
+    tag pair or blank, which is where the movetext begins.
+    */
+    private static int tagSectionEnd(ByteSequence text) {
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            int lineStart = i;
+            while (i < length && (text.byteAt(i) == ' '
+                || text.byteAt(i) == '\t' || text.byteAt(i) == '\r')) {
+                i++;
+            }
+            if (i < length && text.byteAt(i) != '['
+                && text.byteAt(i) != '\n') {
+                return lineStart;
+            }
+            while (i < length && text.byteAt(i) != '\n') {
+                i++;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    /*
+    indexGames walks every byte once, using the same rule as PgnGameReader: a
+    game starts at a '[' in the first column that comes after movetext and is
+    not inside a brace comment. Each window is only scanned up to where the
+    next window begins, so the overlapping bytes are not counted twice.
+    */
+    private void indexGames() {
+        boolean lineStart = true;
+        boolean tagLine = false;
+        boolean lineComment = false;
+        boolean seenMoves = false;
+        boolean seenAnything = false;
+        boolean inComment = false;
+        for (int w = 0; w < windows.length; w++) {
+            MappedByteBuffer window = windows[w];
+            int limit = (int) Math.min(WINDOW, size - w * WINDOW);
+            for (int i = 0; i < limit; i++) {
+                int b = window.get(i);
+                if (b == '\n') {
+                    lineStart = true;
+                    tagLine = false;
+                    lineComment = false;
+                    continue;
+                }
+                if (lineStart && b == '[' && !inComment) {
+                    if (seenMoves || !seenAnything) {
+                        addGame(w * WINDOW + i);
+                        seenMoves = false;
+                    }
+                    tagLine = true;
+                } else if (!seenAnything && b > ' ') {
+                    addGame(w * WINDOW + i);
+                }
+                if (b > ' ') {
+                    seenAnything = true;
+                }
+                lineStart = false;
+                if (tagLine || lineComment) {
+                    continue;
+                }
+                if (inComment) {
+                    // brace comments do not nest: the first '}' ends the
+                    // comment, as in PgnLexer
+                    inComment = b != '}';
+                } else if (b == '{') {
+                    inComment = true;
+                } else if (b == ';') {
+                    lineComment = true;
+                } else if (b > ' ') {
+                    seenMoves = true;
+                }
+            }
+        }
+    }
+
+    private void addGame(long offset) {
+        if (gameCount == gameStarts.length) {
+            gameStarts = Arrays.copyOf(gameStarts, gameCount * 2);
+        }
+        gameStarts[gameCount++] = offset;
+    }
+}
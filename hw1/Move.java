@@ -0,0 +1,127 @@
+/**
+ * Moves packed into an int so they can be stored in plain int arrays. Only
+ * the low 16 bits are used:
+ *
+ * <pre>
+ * bits  0-5   from square (0 = a1 ... 63 = h8)
+ * bits  6-11  to square
+ * bits 12-15  flags
+ * </pre>
+ *
+ * The flags say what kind of move it is. Bit 2 (CAPTURE) is set on every
+ * capture and bit 3 (PROMOTION) on every promotion, in which case the low two
+ * flag bits give the piece promoted to, knight through queen.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class Move {
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+
+    /**
+     * A value that is never a real move, since from and to are both a1.
+     */
+    public static final int NONE = 0;
+
+    private Move() {
+    }
+
+    /**
+     * @param from the square the piece leaves
+     * @param to the square the piece arrives on
+     * @param flags one of the flag constants, with CAPTURE and PROMOTION
+     *        combined as needed
+     * @return the packed move
+     */
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    /**
+     * @param from the square the pawn leaves
+     * @param to the square the pawn arrives on
+     * @param type the piece promoted to, Position.KNIGHT to Position.QUEEN
+     * @param capture whether the promotion also captures
+     * @return the packed move
+     */
+    public static int promotion(int from, int to, int type, boolean capture) {
+        int flags = PROMOTION | (type - Position.KNIGHT)
+            | (capture ? CAPTURE : 0);
+        return of(from, to, flags);
+    }
+
+    /**
+     * @param move a packed move
+     * @return the square the piece leaves
+     */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * @param move a packed move
+     * @return the square the piece arrives on
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @param move a packed move
+     * @return the move's flags
+     */
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    /**
+     * @param move a packed move
+     * @return true for captures, en passant and capturing promotions
+     *         included
+     */
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    /**
+     * @param move a packed move
+     * @return true for promotions
+     */
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    /**
+     * @param move a packed move
+     * @return the piece type promoted to, or Position.EMPTY
+     */
+    public static int promotionType(int move) {
+        return isPromotion(move) ? Position.KNIGHT + (flags(move) & 3)
+            : Position.EMPTY;
+    }
+
+    /**
+     * @param move a packed move
+     * @return the move in long algebraic form, e.g. "e2e4" or "e7e8q"
+     */
+    public static String toString(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        appendSquare(sb, from(move));
+        appendSquare(sb, to(move));
+        if (isPromotion(move)) {
+            sb.append("nbrq".charAt(flags(move) & 3));
+        }
+        return sb.toString();
+    }
+
+    private static void appendSquare(StringBuilder sb, int sq) {
+        sb.append((char) ('a' + (sq & 7))).append((char) ('1' + (sq >>> 3)));
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Generates the moves of the side to move in a Position. Moves are packed as
+ * in Move and written into an int[] supplied by the caller, so generating
+ * moves allocates nothing; MAX_MOVES entries are always enough.
+ *
+ * Generation happens in two steps. The pseudo-legal moves are the moves each
+ * piece can make from its square, the same squares Piece.movesFrom lists,
+ * cut short by blockers and restricted to empty or enemy squares. The legal
+ * filter then removes the moves that leave the king in check. It does so
+ * without playing them: checking pieces and pinned pieces are found once per
+ * position and each move is tested against those masks. Only king moves and
+ * en passant, which can uncover an attack in ways the masks miss, look at
+ * the board again.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class MoveGenerator {
+
+    /**
+     * More moves than any legal chess position has.
+     */
+    public static final int MAX_MOVES = 256;
+
+    private static final int[] PROMOTIONS = {Position.QUEEN, Position.ROOK,
+        Position.BISHOP, Position.KNIGHT};
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Writes every legal move of the side to move into moves.
+     *
+     * @param position the position to generate moves for
+     * @param moves receives the moves from index 0; must hold MAX_MOVES
+     * @return the number of moves written
+     */
+    public static int legalMoves(Position position, int[] moves) {
+        int count = pseudoLegalMoves(position, moves);
+        int us = position.sideToMove();
+        int king = position.kingSquare(us);
+        long checkers = position.attackersTo(king, us ^ 1,
+            position.occupied());
+        long pinned = pinned(position, king, us);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            if (isLegal(position, moves[i], king, checkers, pinned)) {
+                moves[legal++] = moves[i];
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Writes every pseudo-legal move of the side to move into moves. Castling
+     * is only generated when the king does not start in, pass through or end
+     * in check.
+     *
+     * @param position the position to generate moves for
+     * @param moves receives the moves from index 0; must hold MAX_MOVES
+     * @return the number of moves written
+     */
+    public static int pseudoLegalMoves(Position position, int[] moves) {
+        int us = position.sideToMove();
+        long own = position.pieces(us);
+        long enemy = position.pieces(us ^ 1);
+        long occupied = own | enemy;
+        int count = pawnMoves(position, moves, 0, us, enemy, occupied);
+        for (long b = position.pieces(us, Position.KNIGHT); b != 0;
+            b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            count = addMoves(moves, count, from,
+                Bitboards.KNIGHT_ATTACKS[from] & ~own, enemy);
+        }
+        for (long b = position.pieces(us, Position.BISHOP); b != 0;
+            b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            count = addMoves(moves, count, from,
+                Bitboards.bishopAttacks(from, occupied) & ~own, enemy);
+        }
+        for (long b = position.pieces(us, Position.ROOK); b != 0;
+            b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            count = addMoves(moves, count, from,
+                Bitboards.rookAttacks(from, occupied) & ~own, enemy);
+        }
+        for (long b = position.pieces(us, Position.QUEEN); b != 0;
+            b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            count = addMoves(moves, count, from,
+                Bitboards.queenAttacks(from, occupied) & ~own, enemy);
+        }
+        int king = position.kingSquare(us);
+        if (king < 64) {
+            count = addMoves(moves, count, king,
+                Bitboards.KING_ATTACKS[king] & ~own, enemy);
+            count = castlingMoves(position, moves, count, us, king, occupied);
+        }
+        return count;
+    }
+
+    private static int addMoves(int[] moves, int count, int from,
+        long targets, long enemy) {
+        for (long b = targets; b != 0; b &= b - 1) {
+            int to = Long.numberOfTrailingZeros(b);
+            int flags = ((enemy & (1L << to)) != 0) ? Move.CAPTURE
+                : Move.QUIET;
+            moves[count++] = Move.of(from, to, flags);
+        }
+        return count;
+    }
+
+    private static int pawnMoves(Position position, int[] moves, int count,
+        int us, long enemy, long occupied) {
+        long pawns = position.pieces(us, Position.PAWN);
+        int up = (us == Position.WHITE) ? 8 : -8;
+        long lastRank = Bitboards.rankMask((us == Position.WHITE) ? 7 : 0);
+        long thirdRank = Bitboards.rankMask((us == Position.WHITE) ? 2 : 5);
+        long single = shift(pawns, up) & ~occupied;
+        long doubled = shift(single & thirdRank, up) & ~occupied;
+        for (long b = single; b != 0; b &= b - 1) {
+            int to = Long.numberOfTrailingZeros(b);
+            if ((lastRank & (1L << to)) != 0) {
+                count = addPromotions(moves, count, to - up, to, false);
+            } else {
+                moves[count++] = Move.of(to - up, to, Move.QUIET);
+            }
+        }
+        for (long b = doubled; b != 0; b &= b - 1) {
+            int to = Long.numberOfTrailingZeros(b);
+            moves[count++] = Move.of(to - 2 * up, to, Move.DOUBLE_PAWN_PUSH);
+        }
+        for (long b = pawns; b != 0; b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            long targets = Bitboards.PAWN_ATTACKS[us][from] & enemy;
+            for (long t = targets; t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                if ((lastRank & (1L << to)) != 0) {
+                    count = addPromotions(moves, count, from, to, true);
+                } else {
+                    moves[count++] = Move.of(from, to, Move.CAPTURE);
+                }
+            }
+        }
+        int ep = position.epSquare();
+        if (ep >= 0) {
+            for (long b = Bitboards.PAWN_ATTACKS[us ^ 1][ep] & pawns; b != 0;
+                b &= b - 1) {
+                moves[count++] = Move.of(Long.numberOfTrailingZeros(b), ep,
+                    Move.EN_PASSANT);
+            }
+        }
+        return count;
+    }
+
+    private static int addPromotions(int[] moves, int count, int from, int to,
+        boolean capture) {
+        for (int type : PROMOTIONS) {
+            moves[count++] = Move.promotion(from, to, type, capture);
+        }
+        return count;
+    }
+
+    private static long shift(long b, int up) {
+        return (up > 0) ? b << up : b >>> -up;
+    }
+
+    private static int castlingMoves(Position position, int[] moves,
+        int count, int us, int king, long occupied) {
+        int rights = position.castlingRights();
+        int them = us ^ 1;
+        int home = (us == Position.WHITE) ? 4 : 60;
+        int kingside = (us == Position.WHITE) ? Position.WHITE_KINGSIDE
+            : Position.BLACK_KINGSIDE;
+        int queenside = (us == Position.WHITE) ? Position.WHITE_QUEENSIDE
+            : Position.BLACK_QUEENSIDE;
+        if (king != home || (rights & (kingside | queenside)) == 0
+            || position.isAttacked(home, them)) {
+            return count;
+        }
+        if ((rights & kingside) != 0
+            && (occupied & (3L << (home + 1))) == 0
+            && !position.isAttacked(home + 1, them)
+            && !position.isAttacked(home + 2, them)) {
+            moves[count++] = Move.of(home, home + 2, Move.KING_CASTLE);
+        }
+        if ((rights & queenside) != 0
+            && (occupied & (7L << (home - 3))) == 0
+            && !position.isAttacked(home - 1, them)
+            && !position.isAttacked(home - 2, them)) {
+            moves[count++] = Move.of(home, home - 2, Move.QUEEN_CASTLE);
+        }
+        return count;
+    }
+
+    /*
+    pinned returns the pieces of color us that stand alone between their king
+    and an enemy slider. A pinned piece may only move along the line through
+    the king and itself.
+    */
+    private static long pinned(Position position, int king, int us) {
+        int them = us ^ 1;
+        long occupied = position.occupied();
+        long queens = position.pieces(them, Position.QUEEN);
+        long snipers = (Bitboards.rookAttacks(king, 0L)
+            & (position.pieces(them, Position.ROOK) | queens))
+            | (Bitboards.bishopAttacks(king, 0L)
+            & (position.pieces(them, Position.BISHOP) | queens));
+        long result = 0L;
+        for (long b = snipers; b != 0; b &= b - 1) {
+            int sniper = Long.numberOfTrailingZeros(b);
+            long between = Bitboards.BETWEEN[king][sniper] & occupied;
+            if (Long.bitCount(between) == 1) {
+                result |= between & position.pieces(us);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isLegal(Position position, int move, int king,
+        long checkers, long pinned) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int them = position.sideToMove() ^ 1;
+        long occupied = position.occupied();
+        if (from == king) {
+            if (Move.flags(move) == Move.KING_CASTLE
+                || Move.flags(move) == Move.QUEEN_CASTLE) {
+                return true;
+            }
+            return position.attackersTo(to, them, occupied ^ (1L << from))
+                == 0;
+        }
+        if (Move.flags(move) == Move.EN_PASSANT) {
+            long victim = 1L << ((them == Position.BLACK) ? to - 8 : to + 8);
+            long after = (occupied ^ (1L << from) ^ victim) | (1L << to);
+            return (position.attackersTo(king, them, after) & ~victim) == 0;
+        }
+        if (checkers != 0) {
+            if (Long.bitCount(checkers) > 1) {
+                return false;
+            }
+            int checker = Long.numberOfTrailingZeros(checkers);
+            long blocks = checkers | Bitboards.BETWEEN[king][checker];
+            if ((blocks & (1L << to)) == 0) {
+                return false;
+            }
+        }
+        if ((pinned & (1L << from)) != 0) {
+            return (Bitboards.LINE[king][from] & (1L << to)) != 0;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,419 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An opening tree: for every position reached in a PGN archive, the moves
+ * played from it and how the games went after each one. Positions are
+ * identified by their Zobrist key, so transpositions share their entries.
+ *
+ * The tree is stored on disk as fixed-size records sorted by key and move,
+ * and is memory-mapped for reading. A lookup is a binary search over the
+ * mapping, which touches a handful of pages and allocates only the entries
+ * it returns.
+ *
+ * <pre>
+ * header   8 bytes magic, 8 bytes record count
+ * record   8 bytes key, 4 bytes move, 4 bytes games, then 4 bytes each
+ *          for white wins, draws and black wins and 4 bytes of padding
+ * </pre>
+ *
+ * Usage: java OpeningTree build tree-file [--plies n] pgn-file...
+ *        java OpeningTree query tree-file [fen]
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class OpeningTree implements Closeable {
+
+    private static final long MAGIC = 0x4f50454e54524545L;
+    private static final int HEADER = 16;
+    private static final int RECORD = 32;
+    // 2^25 records of 32 bytes fill a 1 GiB window, under the 2 GiB a
+    // single mapping can hold
+    private static final int WINDOW_BITS = 25;
+    private static final int WINDOW_MASK = (1 << WINDOW_BITS) - 1;
+
+    private static final int WHITE_WINS = 0;
+    private static final int DRAW = 1;
+    private static final int BLACK_WINS = 2;
+    private static final int UNKNOWN = 3;
+
+    private FileChannel channel;
+    private MappedByteBuffer[] windows;
+    private long size;
+
+    /**
+     * One move played from a position and the results of the games that
+     * played it.
+     */
+    public static final class Entry {
+
+        private final int move;
+        private final int games;
+        private final int whiteWins;
+        private final int draws;
+        private final int blackWins;
+
+        private Entry(int move, int games, int whiteWins, int draws,
+            int blackWins) {
+            this.move = move;
+            this.games = games;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
+        }
+
+        /**
+         * @return the move, packed as in Move
+         */
+        public int move() {
+            return move;
+        }
+
+        /**
+         * @return how many times the move was played, including games
+         *         without a known result
+         */
+        public int games() {
+            return games;
+        }
+
+        /**
+         * @return how many of the games that played the move white won
+         */
+        public int whiteWins() {
+            return whiteWins;
+        }
+
+        /**
+         * @return how many of the games that played the move were drawn
+         */
+        public int draws() {
+            return draws;
+        }
+
+        /**
+         * @return how many of the games that played the move black won
+         */
+        public int blackWins() {
+            return blackWins;
+        }
+
+        /**
+         * @return white's score from 0 to 1 over the games with a result,
+         *         counting a draw as half, or NaN if none had a result
+         */
+        public double whiteScore() {
+            return (whiteWins + draws / 2.0) / (whiteWins + draws + blackWins);
+        }
+    }
+
+    /**
+     * Maps an opening tree written by Builder.
+     *
+     * @param path the tree file
+     * @throws IOException if the file cannot be mapped or is not a tree
+     */
+    public OpeningTree(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() < HEADER || channel.map(
+            FileChannel.MapMode.READ_ONLY, 0, HEADER).getLong(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not an opening tree: " + path);
+        }
+        size = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+            .getLong(8);
+        long windowRecords = 1L << WINDOW_BITS;
+        int count = (int) ((size + windowRecords - 1) / windowRecords);
+        windows = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long first = i * windowRecords;
+            long records = Math.min(windowRecords, size - first);
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                HEADER + first * RECORD, records * RECORD);
+        }
+    }
+
+    /**
+     * @return the number of position and move pairs in the tree
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param position a position
+     * @return the moves played from position, as in lookup(long)
+     */
+    public Entry[] lookup(Position position) {
+        return lookup(position.key());
+    }
+
+    /**
+     * @param key the Zobrist key of a position
+     * @return the moves played from the position, in the order of their
+     *         packed values; empty if the position never occurred
+     */
+    public Entry[] lookup(long key) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        long end = low;
+        while (end < size && keyAt(end) == key) {
+            end++;
+        }
+        Entry[] result = new Entry[(int) (end - low)];
+        for (int i = 0; i < result.length; i++) {
+            ByteBuffer window = windows[(int) ((low + i) >>> WINDOW_BITS)];
+            int at = (int) ((low + i) & WINDOW_MASK) * RECORD + 8;
+            result[i] = new Entry(window.getInt(at), window.getInt(at + 4),
+                window.getInt(at + 8), window.getInt(at + 12),
+                window.getInt(at + 16));
+        }
+        return result;
+    }
+
+    // keys are compared signed; Builder sorts them the same way
+    private long keyAt(long record) {
+        return windows[(int) (record >>> WINDOW_BITS)].getLong(
+            (int) (record & WINDOW_MASK) * RECORD);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Collects the positions of replayed games and writes them out as an
+     * opening tree. Each position and move is held as one long and one int
+     * until write sorts and merges them, so a Builder needs about twelve
+     * bytes per ply added.
+     */
+    public static final class Builder {
+
+        private int maxPlies;
+        private long[] keys = new long[1 << 16];
+        // move << 2 | result
+        private int[] tags = new int[1 << 16];
+        private int size;
+        private long rejected;
+
+        /**
+         * @param maxPlies how many plies of each game to record
+         */
+        public Builder(int maxPlies) {
+            this.maxPlies = maxPlies;
+        }
+
+        /**
+         * Replays one game and records the position before each of its
+         * first maxPlies moves. Moves after those are not replayed. The
+         * result comes from the game termination marker; games without one
+         * count towards games but not results.
+         *
+         * A game with a move that cannot be played is skipped: nothing of
+         * it is recorded, and it is counted in rejected().
+         *
+         * @param game the PGN text of a game, or just its movetext
+         * @return whether the game was recorded
+         */
+        public boolean add(CharSequence game) {
+            Position position = new Position();
+            int first = size;
+            int result = UNKNOWN;
+            PgnLexer lexer = new PgnLexer(game);
+            try {
+                for (PgnLexer.Token t = lexer.next();
+                    t != PgnLexer.Token.END; t = lexer.next()) {
+                    if (t == PgnLexer.Token.MOVE && lexer.depth() == 0
+                        && size - first < maxPlies) {
+                        long key = position.key();
+                        int move = position.playSan(lexer.text(), lexer.start(),
+                            lexer.end());
+                        append(key, move << 2);
+                    } else if (t == PgnLexer.Token.RESULT) {
+                        result = result(lexer.tokenString());
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                size = first;
+                rejected++;
+                return false;
+            }
+            for (int i = first; i < size; i++) {
+                tags[i] |= result;
+            }
+            return true;
+        }
+
+        /**
+         * @return the number of games add has skipped
+         */
+        public long rejected() {
+            return rejected;
+        }
+
+        private static int result(String token) {
+            switch (token) {
+            case "1-0":
+                return WHITE_WINS;
+            case "0-1":
+                return BLACK_WINS;
+            case "1/2-1/2":
+                return DRAW;
+            default:
+                return UNKNOWN;
+            }
+        }
+
+        private void append(long key, int tag) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                tags = Arrays.copyOf(tags, size * 2);
+            }
+            keys[size] = key;
+            tags[size] = tag;
+            size++;
+        }
+
+        /**
+         * Sorts what has been added, merges repeats of the same position and
+         * move, and writes the tree to path.
+         *
+         * @param path where the tree is written
+         * @return the number of records written
+         * @throws IOException if the file cannot be written
+         */
+        public long write(Path path) throws IOException {
+            KeySort.sort(keys, tags, size);
+            long records = 0;
+            try (FileChannel out = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD * 4096);
+                out.position(HEADER);
+                int i = 0;
+                while (i < size) {
+                    int[] counts = new int[4];
+                    int j = i;
+                    while (j < size && keys[j] == keys[i]
+                        && tags[j] >>> 2 == tags[i] >>> 2) {
+                        counts[tags[j] & 3]++;
+                        j++;
+                    }
+                    if (!buffer.hasRemaining()) {
+                        drain(buffer, out);
+                    }
+                    buffer.putLong(keys[i]).putInt(tags[i] >>> 2)
+                        .putInt(j - i).putInt(counts[WHITE_WINS])
+                        .putInt(counts[DRAW]).putInt(counts[BLACK_WINS])
+                        .putInt(0);
+                    records++;
+                    i = j;
+                }
+                drain(buffer, out);
+                buffer.putLong(MAGIC).putLong(records);
+                out.position(0);
+                drain(buffer, out);
+            }
+            return records;
+        }
+
+        private static void drain(ByteBuffer buffer, FileChannel out)
+            throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 3 && args[0].equals("build")) {
+                build(args);
+            } else if (args.length >= 2 && args[0].equals("query")) {
+                query(args);
+            } else {
+                System.err.println("Usage: java OpeningTree build tree-file"
+                    + " [--plies n] pgn-file...");
+                System.err.println("       java OpeningTree query tree-file"
+                    + " [fen]");
+                System.exit(2);
+            }
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        }
+    }
+
+    private static void build(String[] args) throws IOException {
+        int i = 2;
+        int plies = Integer.MAX_VALUE;
+        if (args[i].equals("--plies") && i + 1 < args.length) {
+            plies = Integer.parseInt(args[i + 1]);
+            i += 2;
+        }
+        Builder builder = new Builder(plies);
+        int games = 0;
+        for (; i < args.length; i++) {
+            try (PgnGameReader reader =
+                PgnGameReader.open(Paths.get(args[i]))) {
+                for (int game = 0; reader.hasNext(); game++) {
+                    if (builder.add(reader.next())) {
+                        games++;
+                    } else {
+                        System.err.format("%s game %d rejected%n", args[i],
+                            game);
+                    }
+                }
+            }
+        }
+        long records = builder.write(Paths.get(args[1]));
+        System.out.format("%d games, %d rejected, %d records%n", games,
+            builder.rejected(), records);
+    }
+
+    private static void query(String[] args) throws IOException {
+        Position position = new Position();
+        if (args.length > 2) {
+            position = new Position(String.join(" ",
+                Arrays.copyOfRange(args, 2, args.length)));
+        }
+        try (OpeningTree tree = new OpeningTree(Paths.get(args[1]))) {
+            long start = System.nanoTime();
+            Entry[] entries = tree.lookup(position);
+            long micros = (System.nanoTime() - start) / 1000;
+            Arrays.sort(entries,
+                Comparator.comparingInt(Entry::games).reversed());
+            for (Entry e : entries) {
+                System.out.format("%-6s %8d games  %5.1f%% %5.1f%% %5.1f%%%n",
+                    Move.toString(e.move()), e.games(),
+                    percent(e.whiteWins(), e), percent(e.draws(), e),
+                    percent(e.blackWins(), e));
+            }
+            System.out.format("%d moves in %d us%n", entries.length, micros);
+        }
+    }
+
+    private static double percent(int count, Entry e) {
+        return 100.0 * count / Math.max(1, e.games());
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Searches one position on several threads at once by Lazy SMP: every
+ * thread runs its own iterative-deepening Search of the whole tree, and the
+ * threads share nothing but the TranspositionTable. What one thread stores
+ * there, the others find and skip, so together they reach a given depth
+ * sooner than one thread would. No work is split or handed between threads
+ * and nothing is locked.
+ *
+ * The calling thread runs the main search and its move is the one played.
+ * The helpers run on a ForkJoinPool and are stopped as soon as the main
+ * search finishes.
+ *
+ * @see https://www.chessprogramming.org/Lazy_SMP
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class ParallelSearch {
+
+    private ForkJoinPool pool;
+    private Search[] searches;
+
+    /**
+     * Creates a ParallelSearch with all required parameters.
+     *
+     * @param table the transposition table all threads share
+     * @param threads the number of threads, the calling thread included
+     */
+    public ParallelSearch(TranspositionTable table, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table, i);
+        }
+        pool = (threads > 1) ? new ForkJoinPool(threads - 1) : null;
+    }
+
+    /**
+     * @param fen the position to search, in FEN
+     * @param timeMillis how long to search for
+     * @return the best move found, packed as in Move, or Move.NONE if the
+     *         side to move is mated or stalemated
+     * @throws IllegalArgumentException if fen cannot be read
+     */
+    public int bestMove(String fen, long timeMillis) {
+        return bestMove(new Position(fen), timeMillis, Search.MAX_PLY - 1);
+    }
+
+    /**
+     * Searches as Search.bestMove does, on every thread.
+     *
+     * @param root the position to search; it must not change until the
+     *        search returns
+     * @param timeMillis how long to search for
+     * @param maxDepth the deepest iteration to run, 1 to MAX_PLY - 1
+     * @return the best move found, or Move.NONE if there is no legal move
+     */
+    public int bestMove(Position root, long timeMillis, int maxDepth) {
+        for (Search search : searches) {
+            search.aborted = false;
+        }
+        List<ForkJoinTask<Integer>> helpers = new ArrayList<>();
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            helpers.add(pool.submit(() ->
+                helper.bestMove(root, timeMillis, maxDepth)));
+        }
+        int move = searches[0].bestMove(root, timeMillis, maxDepth);
+        for (int i = 1; i < searches.length; i++) {
+            searches[i].aborted = true;
+        }
+        for (ForkJoinTask<Integer> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+        return move;
+    }
+
+    /**
+     * @return the score of the last search's best move
+     */
+    public int score() {
+        return searches[0].score();
+    }
+
+    /**
+     * @return the deepest iteration the main thread completed
+     */
+    public int depth() {
+        return searches[0].depth();
+    }
+
+    /**
+     * @return the number of nodes the last search visited, over all threads
+     */
+    public long nodes() {
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.nodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the share of pawn structure lookups that hit, over all
+     *         threads and every search so far
+     */
+    public double pawnHitRate() {
+        long probes = 0;
+        long hits = 0;
+        for (Search search : searches) {
+            probes += search.pawnTable().probes();
+            hits += search.pawnTable().hits();
+        }
+        return (probes == 0) ? 0.0 : (double) hits / probes;
+    }
+
+    /**
+     * Stops the helper threads. The ParallelSearch cannot be used after.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * A cache of pawn structure evaluations, keyed by Position.pawnKey(). The
+ * pawns change on few moves, so most positions a search reaches have a
+ * pawn structure it has already scored, and the doubled, isolated and
+ * passed pawns are found by one lookup instead of a pass over the pawns.
+ *
+ * Each entry holds the pawn key, the structure's middlegame and endgame
+ * scores for white, and the passed pawns of both colors as a bitboard, which
+ * Evaluation also uses for the terms that depend on other pieces. Entries
+ * live in preallocated arrays and a new structure simply replaces the one in
+ * its slot.
+ *
+ * A PawnTable is not thread-safe; each Search has its own.
+ *
+ * @see https://www.chessprogramming.org/Pawn_Hash_Table
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class PawnTable {
+
+    // bonuses by rank counted from the pawn's own side, 0 to 7
+    private static final int[] PASSED_MIDDLEGAME = {0, 5, 10, 15, 25, 40, 60,
+        0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 20, 35, 60, 100, 150,
+        0};
+    private static final int DOUBLED_MIDDLEGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDDLEGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+
+    /*
+    FRONT_SPAN[color][square] holds the squares ahead of a pawn of that color
+    on its own and both adjacent files; the pawn is passed if no enemy pawn
+    stands there. ADJACENT_FILES[file] holds the files beside file.
+    */
+    private static final long[][] FRONT_SPAN = new long[2][64];
+    private static final long[] ADJACENT_FILES = new long[8];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = ((file > 0) ? Bitboards.fileMask(file - 1)
+                : 0L) | ((file < 7) ? Bitboards.fileMask(file + 1) : 0L);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int file = sq & 7;
+            int rank = sq >>> 3;
+            long files = Bitboards.fileMask(file) | ADJACENT_FILES[file];
+            for (int r = rank + 1; r < 8; r++) {
+                FRONT_SPAN[Position.WHITE][sq] |= files & Bitboards.rankMask(r);
+            }
+            for (int r = rank - 1; r >= 0; r--) {
+                FRONT_SPAN[Position.BLACK][sq] |= files & Bitboards.rankMask(r);
+            }
+        }
+    }
+
+    private long[] keys;
+    private long[] passed;
+    private int[] middlegame;
+    private int[] endgame;
+    private int mask;
+    private long probes;
+    private long hits;
+
+    /**
+     * Creates a PawnTable with at least the given number of entries,
+     * rounded up to a power of two. A few thousand entries are enough for
+     * most searches, since few pawn structures occur in one tree.
+     *
+     * @param entries the number of entries, at least 1
+     */
+    public PawnTable(int entries) {
+        if (entries < 1 || entries > 1 << 30) {
+            throw new IllegalArgumentException("entries out of range: "
+                + entries);
+        }
+        int size = Integer.highestOneBit(entries);
+        if (size < entries) {
+            size <<= 1;
+        }
+        keys = new long[size];
+        passed = new long[size];
+        middlegame = new int[size];
+        endgame = new int[size];
+        mask = size - 1;
+        // 0 is the key of a board without pawns, so empty slots hold a
+        // key no real pawn structure is likely to have instead
+        Arrays.fill(keys, -1L);
+    }
+
+    /**
+     * Finds the entry for position's pawns, scoring them and replacing the
+     * slot's old entry if they are not in the table.
+     *
+     * @param position the position
+     * @return the entry's slot, to pass to middlegame, endgame and passed
+     */
+    public int probe(Position position) {
+        long key = position.pawnKey();
+        int slot = (int) key & mask;
+        probes++;
+        if (keys[slot] == key) {
+            hits++;
+            return slot;
+        }
+        keys[slot] = key;
+        long whitePawns = position.pieces(Position.WHITE, Position.PAWN);
+        long blackPawns = position.pieces(Position.BLACK, Position.PAWN);
+        int mg = 0;
+        int eg = 0;
+        long passers = 0L;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            long own = (color == Position.WHITE) ? whitePawns : blackPawns;
+            long enemy = (color == Position.WHITE) ? blackPawns : whitePawns;
+            int sign = (color == Position.WHITE) ? 1 : -1;
+            for (int file = 0; file < 8; file++) {
+                int count = Long.bitCount(own & Bitboards.fileMask(file));
+                if (count > 1) {
+                    mg += sign * DOUBLED_MIDDLEGAME * (count - 1);
+                    eg += sign * DOUBLED_ENDGAME * (count - 1);
+                }
+                if (count > 0 && (own & ADJACENT_FILES[file]) == 0) {
+                    mg += sign * ISOLATED_MIDDLEGAME * count;
+                    eg += sign * ISOLATED_ENDGAME * count;
+                }
+            }
+            for (long b = own; b != 0; b &= b - 1) {
+                int sq = Long.numberOfTrailingZeros(b);
+                if ((FRONT_SPAN[color][sq] & enemy) == 0) {
+                    passers |= 1L << sq;
+                    int rank = (color == Position.WHITE) ? sq >>> 3
+                        : 7 - (sq >>> 3);
+                    mg += sign * PASSED_MIDDLEGAME[rank];
+                    eg += sign * PASSED_ENDGAME[rank];
+                }
+            }
+        }
+        passed[slot] = passers;
+        middlegame[slot] = mg;
+        endgame[slot] = eg;
+        return slot;
+    }
+
+    /**
+     * @param slot a slot returned by probe
+     * @return the pawn structure's middlegame score for white
+     */
+    public int middlegame(int slot) {
+        return middlegame[slot];
+    }
+
+    /**
+     * @param slot a slot returned by probe
+     * @return the pawn structure's endgame score for white
+     */
+    public int endgame(int slot) {
+        return endgame[slot];
+    }
+
+    /**
+     * @param slot a slot returned by probe
+     * @return the passed pawns of both colors
+     */
+    public long passed(int slot) {
+        return passed[slot];
+    }
+
+    /**
+     * @return the number of probes so far
+     */
+    public long probes() {
+        return probes;
+    }
+
+    /**
+     * @return the number of probes so far that found their pawns stored
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the share of probes that were hits, from 0 to 1
+     */
+    public double hitRate() {
+        return (probes == 0) ? 0.0 : (double) hits / probes;
+    }
+}
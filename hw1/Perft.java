@@ -0,0 +1,210 @@
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth (perft) and
+ * compares them against published counts for a suite of standard positions.
+ * A wrong count at any depth means the move generator or make/unmake in
+ * Position has a bug; the time taken gives nodes per second for move
+ * generation.
+ *
+ * Divide mode prints the count below each root move, which narrows a wrong
+ * total down to a single move. With more than one thread the root moves are
+ * split across a ForkJoinPool.
+ *
+ * Usage: java Perft [--depth d] [--threads n] [--divide] [fen]
+ * Without a FEN the whole suite is run up to depth d (default 5) and the
+ * exit status is 1 if any count is wrong.
+ *
+ * @see https://www.chessprogramming.org/Perft_Results
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class Perft {
+
+    /**
+     * Name, FEN and the expected node counts from depth 1 up.
+     */
+    private static final Object[][] SUITE = {
+        {"start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            new long[] {20, 400, 8902, 197281, 4865609, 119060324}},
+        {"kiwipete",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -"
+            + " 0 1", new long[] {48, 2039, 97862, 4085603, 193690690}},
+        {"position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            new long[] {14, 191, 2812, 43238, 674624, 11030083}},
+        {"position4",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            new long[] {6, 264, 9467, 422333, 15833292}},
+        {"position5",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            new long[] {44, 1486, 62379, 2103487, 89941194}}
+    };
+
+    // the position being walked and one move list per ply, reused for
+    // every node
+    private Position position = new Position();
+    private int[][] moves;
+
+    /**
+     * Creates a Perft that can search up to maxDepth plies. A Perft is not
+     * thread-safe; give each thread its own.
+     *
+     * @param maxDepth the deepest search this Perft will be asked for
+     */
+    public Perft(int maxDepth) {
+        moves = new int[maxDepth + 1][MoveGenerator.MAX_MOVES];
+    }
+
+    /**
+     * @param root the root position, which is left unchanged
+     * @param depth the number of plies to search, at least 1
+     * @return the number of legal move sequences of exactly depth plies
+     */
+    public long count(Position root, int depth) {
+        position.copyFrom(root);
+        return count(0, depth);
+    }
+
+    /*
+    count walks the whole tree on one Position, making each move and
+    unmaking it on the way back. The last ply is not played at all, since
+    the number of legal moves is the leaf count.
+    */
+    private long count(int ply, int depth) {
+        int n = MoveGenerator.legalMoves(position, moves[ply]);
+        if (depth == 1) {
+            return n;
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            position.makeMove(moves[ply][i]);
+            nodes += count(ply + 1, depth - 1);
+            position.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the leaves below each root move of root.
+     *
+     * @param root the root position, which is left unchanged
+     * @param depth the number of plies to search, at least 1
+     * @param rootMoves receives the legal root moves; must hold
+     *        MoveGenerator.MAX_MOVES
+     * @param pool the pool to split the root moves across, or null to count
+     *        on the calling thread
+     * @return the count below each root move, in the order of rootMoves
+     */
+    public static long[] divide(Position root, int depth,
+        int[] rootMoves, ForkJoinPool pool) {
+        int n = MoveGenerator.legalMoves(root, rootMoves);
+        long[] counts = new long[n];
+        if (depth == 1) {
+            Arrays.fill(counts, 1L);
+            return counts;
+        }
+        if (pool == null) {
+            Perft perft = new Perft(depth);
+            for (int i = 0; i < n; i++) {
+                counts[i] = child(perft, root, rootMoves[i], depth);
+            }
+            return counts;
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(i ->
+                counts[i] = child(new Perft(depth), root, rootMoves[i],
+                    depth))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return counts;
+    }
+
+    private static long child(Perft perft, Position root, int move,
+        int depth) {
+        perft.position.copyFrom(root);
+        perft.position.makeMove(move);
+        return perft.count(1, depth - 1);
+    }
+
+    public static void main(String[] args) {
+        int depth = 5;
+        int threads = 1;
+        boolean divide = false;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("--")) {
+            if (args[i].equals("--divide")) {
+                divide = true;
+                i++;
+            } else if (args[i].equals("--depth") && i + 1 < args.length) {
+                depth = Integer.parseInt(args[i + 1]);
+                i += 2;
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[i + 1]);
+                i += 2;
+            } else {
+                System.err.println("Usage: java Perft [--depth d]"
+                    + " [--threads n] [--divide] [fen]");
+                System.exit(2);
+            }
+        }
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        boolean ok = true;
+        if (i < args.length) {
+            StringBuilder fen = new StringBuilder(args[i]);
+            for (i++; i < args.length; i++) {
+                fen.append(' ').append(args[i]);
+            }
+            run("fen", new Position(fen.toString()), depth, null, divide,
+                pool);
+        } else {
+            for (Object[] test : SUITE) {
+                long[] expected = (long[]) test[2];
+                Position position = new Position((String) test[1]);
+                for (int d = 1; d <= Math.min(depth, expected.length); d++) {
+                    ok &= run((String) test[0], position, d,
+                        expected[d - 1], divide && d == depth, pool);
+                }
+            }
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    /*
+    run counts one position to one depth, prints the total with its speed
+    and, in divide mode, every root move first. It returns false only if
+    expected is given and the count differs from it.
+    */
+    private static boolean run(String name, Position position, int depth,
+        Long expected, boolean divide, ForkJoinPool pool) {
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        long start = System.nanoTime();
+        long[] counts = divide(position, depth, rootMoves, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long nodes = 0;
+        for (int j = 0; j < counts.length; j++) {
+            nodes += counts[j];
+            if (divide) {
+                System.out.format("%s: %d%n", Move.toString(rootMoves[j]),
+                    counts[j]);
+            }
+        }
+        boolean ok = expected == null || nodes == expected;
+        System.out.format("%-10s depth %2d %14d nodes %8.3f s %12.0f nps%s%n",
+            name, depth, nodes, seconds, nodes / Math.max(seconds, 1e-9),
+            ok ? "" : "  FAILED, expected " + expected);
+        return ok;
+    }
+}
@@ -0,0 +1,395 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Replays the games of a PGN corpus in parallel. Games are cut into chunks at
+ * game boundaries, each chunk is replayed on a ForkJoinPool, and the complete
+ * FEN of each final position is handed to the caller in the same order as the
+ * games appear in the file. While one chunk is being replayed the next one is
+ * read, so reading and replaying overlap.
+ *
+ * Results can also go to a ResultSink, one chunk at a time, with the seven
+ * tag roster alongside each FEN.
+ *
+ * A game with a move that cannot be played is reported on standard error by
+ * its number, counting from 0, and left out; the rest of the corpus is still
+ * replayed.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class PgnBatch {
+
+    private static final ThreadLocal<FenWriter> WRITERS =
+        ThreadLocal.withInitial(FenWriter::new);
+
+    private ForkJoinPool pool;
+    private int chunkSize;
+    private long rejected;
+
+    /*
+    Replayed is the outcome of one game: its result, or why it was left out.
+    */
+    private static final class Replayed<T> {
+
+        private final T value;
+        private final String error;
+
+        Replayed(T value, String error) {
+            this.value = value;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Creates a PgnBatch with all required parameters.
+     *
+     * @param threads the number of replay threads
+     * @param chunkSize the number of games replayed per chunk. Only two
+     *        chunks are held in memory at a time.
+     */
+    public PgnBatch(int threads, int chunkSize) {
+        if (threads < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("threads and chunkSize must be"
+                + " positive");
+        }
+        this.pool = new ForkJoinPool(threads);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Creates a PgnBatch that uses every available core.
+     */
+    public PgnBatch() {
+        this(Runtime.getRuntime().availableProcessors(), 4096);
+    }
+
+    /**
+     * Replays every game from games and passes each final position to out in
+     * game order. out is only ever called from the calling thread.
+     *
+     * @param games the PGN text of each game, e.g. a PgnGameReader
+     * @param out receives the final position of each game in FEN
+     */
+    public void replay(Iterator<String> games, Consumer<String> out) {
+        ForkJoinTask<List<Replayed<String>>> running = null;
+        long runningFirst = 0;
+        long first = 0;
+        while (games.hasNext()) {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            while (games.hasNext() && chunk.size() < chunkSize) {
+                chunk.add(games.next());
+            }
+            ForkJoinTask<List<Replayed<String>>> next = pool.submit(() ->
+                chunk.parallelStream()
+                    .map(game -> attempt(() -> finalFen(game)))
+                    .collect(Collectors.toList()));
+            emit(running, runningFirst, out);
+            running = next;
+            runningFirst = first;
+            first += chunk.size();
+        }
+        emit(running, runningFirst, out);
+    }
+
+    /**
+     * Replays every game of a memory-mapped file and passes each final
+     * position to out in game order. The file is already split at game
+     * boundaries, so chunks are just ranges of game indexes.
+     *
+     * @param pgn the mapped PGN file
+     * @param out receives the final position of each game in FEN
+     */
+    public void replay(MappedPgnFile pgn, Consumer<String> out) {
+        ForkJoinTask<List<Replayed<String>>> running = null;
+        int runningFirst = 0;
+        for (int start = 0; start < pgn.gameCount(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(pgn.gameCount(), start + chunkSize);
+            ForkJoinTask<List<Replayed<String>>> next = pool.submit(() ->
+                IntStream.range(from, to).parallel()
+                    .mapToObj(i -> attempt(() -> finalFen(pgn, i)))
+                    .collect(Collectors.toList()));
+            emit(running, runningFirst, out);
+            running = next;
+            runningFirst = from;
+        }
+        emit(running, runningFirst, out);
+    }
+
+    /**
+     * Replays every game from games and writes a GameResult for each to
+     * sink, in game order and one chunk at a time. The sink is only ever
+     * called from the calling thread; it is neither flushed nor closed.
+     *
+     * @param games the PGN text of each game, e.g. a PgnGameReader
+     * @param sink receives the results
+     * @throws IOException if sink cannot write a result
+     */
+    public void replay(Iterator<String> games, ResultSink sink)
+        throws IOException {
+        ForkJoinTask<List<Replayed<GameResult>>> running = null;
+        long runningFirst = 0;
+        long first = 0;
+        while (games.hasNext()) {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            while (games.hasNext() && chunk.size() < chunkSize) {
+                chunk.add(games.next());
+            }
+            long base = first;
+            ForkJoinTask<List<Replayed<GameResult>>> next = pool.submit(() ->
+                IntStream.range(0, chunk.size()).parallel()
+                    .mapToObj(i -> attempt(() -> GameResult.of(base + i,
+                        chunk.get(i), WRITERS.get())))
+                    .collect(Collectors.toList()));
+            emit(running, runningFirst, sink);
+            running = next;
+            runningFirst = first;
+            first += chunk.size();
+        }
+        emit(running, runningFirst, sink);
+    }
+
+    /**
+     * Replays every game of a memory-mapped file and writes a GameResult
+     * for each to sink, as replay(Iterator, ResultSink) does.
+     *
+     * @param pgn the mapped PGN file
+     * @param sink receives the results
+     * @throws IOException if sink cannot write a result
+     */
+    public void replay(MappedPgnFile pgn, ResultSink sink)
+        throws IOException {
+        ForkJoinTask<List<Replayed<GameResult>>> running = null;
+        int runningFirst = 0;
+        for (int start = 0; start < pgn.gameCount(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(pgn.gameCount(), start + chunkSize);
+            ForkJoinTask<List<Replayed<GameResult>>> next = pool.submit(() ->
+                IntStream.range(from, to).parallel()
+                    .mapToObj(i -> attempt(() -> result(pgn, i)))
+                    .collect(Collectors.toList()));
+            emit(running, runningFirst, sink);
+            running = next;
+            runningFirst = from;
+        }
+        emit(running, runningFirst, sink);
+    }
+
+    /**
+     * @return the number of games left out so far because a move could not
+     *         be played
+     */
+    public long rejected() {
+        return rejected;
+    }
+
+    /**
+     * Stops the replay threads once queued work is done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static String finalFen(String game) {
+        return PgnReader.finalFen(game, WRITERS.get());
+    }
+
+    private static String finalFen(MappedPgnFile pgn, int game) {
+        try {
+            return PgnReader.finalFen(pgn.movetext(game), WRITERS.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    result decodes the whole game as UTF-8, tags included, since the mapped
+    bytes read as a CharSequence are Latin-1.
+    */
+    private static GameResult result(MappedPgnFile pgn, int game) {
+        try {
+            ByteSequence text = pgn.game(game);
+            return GameResult.of(game, text.decode(0, text.length(),
+                StandardCharsets.UTF_8), WRITERS.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> Replayed<T> attempt(Supplier<T> replay) {
+        try {
+            return new Replayed<>(replay.get(), null);
+        } catch (IllegalArgumentException e) {
+            return new Replayed<>(null, e.getMessage());
+        }
+    }
+
+    private void emit(ForkJoinTask<List<Replayed<String>>> chunk, long first,
+        Consumer<String> out) {
+        if (chunk != null) {
+            accepted(chunk, first).forEach(out);
+        }
+    }
+
+    private void emit(ForkJoinTask<List<Replayed<GameResult>>> chunk,
+        long first, ResultSink sink) throws IOException {
+        if (chunk != null) {
+            sink.writeAll(accepted(chunk, first));
+        }
+    }
+
+    /*
+    accepted waits for a chunk whose first game is number first, reports the
+    games that were left out and returns the results of the others in order.
+    */
+    private <T> List<T> accepted(ForkJoinTask<List<Replayed<T>>> chunk,
+        long first) {
+        List<Replayed<T>> replayed = join(chunk);
+        List<T> results = new ArrayList<>(replayed.size());
+        long game = first;
+        for (Replayed<T> r : replayed) {
+            if (r.error == null) {
+                results.add(r.value);
+            } else {
+                System.err.format("game %d rejected: %s%n", game, r.error);
+                rejected++;
+            }
+            game++;
+        }
+        return results;
+    }
+
+    private static <T> List<T> join(ForkJoinTask<List<T>> chunk) {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during replay", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Prints the final position of every game in a PGN file, one per line,
+     * or writes the seven tag roster and final FEN of every game as CSV,
+     * JSON lines or a columnar file. Results in those formats are written
+     * by an AsyncSink, so replay threads never wait on the output.
+     * Usage: java PgnBatch [--threads n] [--mmap]
+     *        [--format fen|csv|json|columnar] [--out file] file.pgn
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean mapped = false;
+        String format = "fen";
+        String out = null;
+        int i = 0;
+        while (i < args.length - 1) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+                i += 2;
+            } else if (args[i].equals("--mmap")) {
+                mapped = true;
+                i++;
+            } else if (args[i].equals("--format")) {
+                format = args[i + 1];
+                i += 2;
+            } else if (args[i].equals("--out")) {
+                out = args[i + 1];
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        PgnBatch batch = new PgnBatch(threads, 4096);
+        try {
+            if (format.equals("fen")) {
+                replayFens(batch, Paths.get(args[i]), mapped);
+            } else {
+                try (ResultSink sink = new AsyncSink(sink(format, out), 4)) {
+                    replay(batch, Paths.get(args[i]), mapped, sink);
+                }
+            }
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        } finally {
+            batch.shutdown();
+        }
+    }
+
+    private static void replayFens(PgnBatch batch, Path path, boolean mapped)
+        throws IOException {
+        if (mapped) {
+            try (MappedPgnFile pgn = new MappedPgnFile(path)) {
+                batch.replay(pgn, System.out::println);
+            }
+        } else {
+            try (PgnGameReader games = PgnGameReader.open(path)) {
+                batch.replay(games, System.out::println);
+            }
+        }
+    }
+
+    private static void replay(PgnBatch batch, Path path, boolean mapped,
+        ResultSink sink) throws IOException {
+        if (mapped) {
+            try (MappedPgnFile pgn = new MappedPgnFile(path)) {
+                batch.replay(pgn, sink);
+            }
+        } else {
+            try (PgnGameReader games = PgnGameReader.open(path)) {
+                batch.replay(games, sink);
+            }
+        }
+    }
+
+    /*
+    sink opens the sink for a --format, writing to the --out file or, for
+    the text formats, to standard output if there is none.
+    */
+    private static ResultSink sink(String format, String out)
+        throws IOException {
+        if (format.equals("columnar")) {
+            if (out == null) {
+                throw new IllegalArgumentException("--format columnar needs"
+                    + " --out");
+            }
+            return new ColumnarSink(Paths.get(out), 4096);
+        }
+        Writer writer = (out == null)
+            ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+            : Files.newBufferedWriter(Paths.get(out));
+        switch (format) {
+        case "csv":
+            return new CsvSink(writer);
+        case "json":
+            return new JsonLinesSink(writer);
+        default:
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+}
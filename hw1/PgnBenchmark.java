@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Micro-benchmarks for PgnReader. Each benchmark is warmed up and then timed
+ * over several fixed-length iterations on the current thread, and the report
+ * gives throughput and the bytes allocated per operation, read from the
+ * JVM's per-thread allocation counter.
+ *
+ * Games come in three sizes: a four-ply miniature, a 34-move master game and
+ * a 400-ply game of knight shuffles.
+ *
+ * Usage: java PgnBenchmark [filter [seconds-per-iteration]]
+ * Only benchmarks whose name contains filter are run.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class PgnBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    private static final String SMALL = "[Event \"Fool's Mate\"]\n\n"
+        + "1. f3 e6 2. g4 Qh4# 0-1\n";
+
+    private static final String MEDIUM = "[Event \"Candidates\"]\n"
+        + "[Site \"Bled, Zagreb & Belgrade YUG\"]\n[Date \"1959.10.11\"]\n"
+        + "[Round \"20\"]\n[White \"Tal, Mikhail\"]\n"
+        + "[Black \"Fischer, Robert James\"]\n[Result \"1-0\"]\n\n"
+        + "1. d4 Nf6 2. c4 g6 3. Nc3 Bg7 4. e4 d6 5. Be2 O-O 6. Nf3 e5\n"
+        + "7. d5 Nbd7 8. Bg5 h6 9. Bh4 a6 10. O-O Qe8 11. Nd2 Nh7 12. b4 Bf6\n"
+        + "13. Bxf6 Nhxf6 14. Nb3 Qe7 15. Qd2 Kh7 16. Qe3 Ng8 17. c5 f5\n"
+        + "18. exf5 gxf5 19. f4 exf4 20. Qxf4 dxc5 21. Bd3 cxb4 22. Rae1 Qf6\n"
+        + "23. Re6 Qxc3 24. Bxf5+ Rxf5 25. Qxf5+ Kh8 26. Rf3 Qb2 27. Re8 Nf6\n"
+        + "28. Qxf6+ Qxf6 29. Rxf6 Kg7 30. Rff8 Ne7 31. Na5 h5 32. h4 Rb8\n"
+        + "33. Nc4 b5 34. Ne5 1-0\n";
+
+    private static final String LONG = longGame(100);
+
+    private static long sink;
+
+    private static String longGame(int cycles) {
+        StringBuilder sb = new StringBuilder("[Event \"Shuffle\"]\n"
+            + "[Result \"1/2-1/2\"]\n\n");
+        int move = 1;
+        for (int i = 0; i < cycles; i++) {
+            sb.append(move++).append(". Nf3 Nf6 ");
+            sb.append(move++).append(". Ng1 Ng8\n");
+        }
+        return sb.append("1/2-1/2\n").toString();
+    }
+
+    /**
+     * One benchmarked operation. The result is folded into a sink so the JIT
+     * cannot drop the work as dead code.
+     */
+    private interface Operation {
+        Object run();
+    }
+
+    private static String filter = "";
+    private static long iterationNanos = 1_000_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            filter = args[0];
+        }
+        if (args.length > 1) {
+            iterationNanos = (long) (Double.parseDouble(args[1]) * 1e9);
+        }
+        String[][] games = {{"small", SMALL}, {"medium", MEDIUM},
+            {"long", LONG}};
+        System.out.format("%-32s %14s %12s%n", "Benchmark", "ops/s", "B/op");
+        for (String[] game : games) {
+            Path file = Files.createTempFile("bench-" + game[0], ".pgn");
+            file.toFile().deleteOnExit();
+            Files.write(file, game[1].getBytes("UTF-8"));
+            String path = file.toString();
+            String text = game[1];
+            bench("fileContent." + game[0], () -> PgnReader.fileContent(path));
+            bench("infoExtract." + game[0], () -> PgnReader.infoExtract(text));
+            bench("tagValue." + game[0],
+                () -> PgnReader.tagValue("Result", text));
+            bench("finalPosition." + game[0],
+                () -> PgnReader.finalPosition(text));
+        }
+        benchBoardUpdate("pawn", "", "e4");
+        benchBoardUpdate("knight", "", "Nf3");
+        benchBoardUpdate("bishop", "e4 e5", "Bc4");
+        benchBoardUpdate("rook", "a4 a5", "Ra3");
+        benchBoardUpdate("queen", "e4 e5", "Qh5");
+        benchBoardUpdate("king", "e4 e5", "Ke2");
+        benchBoardUpdate("castling", "e4 e5 Nf3 Nc6 Bc4 Bc5", "O-O");
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /*
+    benchBoardUpdate plays setup on a fresh char[][] board and then times
+    boardUpdate making move from that position. boardUpdate changes the
+    board it is given, so every operation works on a copy; the copy is part
+    of the measured cost.
+    */
+    private static void benchBoardUpdate(String name, String setup,
+        String move) {
+        char[][] board = startingBoard();
+        boolean white = true;
+        for (String m : setup.split(" ")) {
+            if (!m.isEmpty()) {
+                PgnReader.boardUpdate(board, m, white);
+                white = !white;
+            }
+        }
+        boolean isWhite = white;
+        bench("boardUpdate." + name, () -> {
+            char[][] copy = new char[8][];
+            for (int i = 0; i < 8; i++) {
+                copy[i] = board[i].clone();
+            }
+            return PgnReader.boardUpdate(copy, move, isWhite);
+        });
+    }
+
+    private static char[][] startingBoard() {
+        String[] ranks = {"rnbqkbnr", "pppppppp", "xxxxxxxx", "xxxxxxxx",
+            "xxxxxxxx", "xxxxxxxx", "PPPPPPPP", "RNBQKBNR"};
+        char[][] board = new char[8][];
+        for (int i = 0; i < 8; i++) {
+            board[i] = ranks[i].toCharArray();
+        }
+        return board;
+    }
+
+    private static void bench(String name, Operation op) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(op);
+        }
+        double totalOps = 0;
+        double totalSeconds = 0;
+        double totalBytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            double[] result = iteration(op);
+            totalOps += result[0];
+            totalSeconds += result[1];
+            totalBytes += result[2];
+        }
+        System.out.format("%-32s %14.1f %12.1f%n", name,
+            totalOps / totalSeconds, totalBytes / totalOps);
+    }
+
+    /*
+    iteration runs op in batches until iterationNanos have passed and returns
+    the operation count, elapsed seconds and bytes allocated by this thread.
+    */
+    private static double[] iteration(Operation op) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long ops = 0;
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long now = start;
+        while (now - start < iterationNanos) {
+            for (int i = 0; i < 64; i++) {
+                sink += System.identityHashCode(op.run());
+            }
+            ops += 64;
+            now = System.nanoTime();
+        }
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        return new double[] {ops, (now - start) / 1e9, bytes};
+    }
+}
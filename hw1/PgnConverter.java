@@ -0,0 +1,299 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Converts PGN files to one binary game file plus an offset index. Every
+ * move of every game is checked by replaying it; games that cannot be
+ * replayed are reported and left out.
+ *
+ * The conversion is a pipeline. Each PGN file is memory-mapped, chunks of
+ * games are parsed and validated in parallel on a ForkJoinPool, and the
+ * results are written in input order while the next chunk is parsed.
+ *
+ * After every chunk the output is forced to disk and a checkpoint records
+ * how far the conversion got. Running the same command again after an
+ * interruption cuts the output back to the checkpoint and continues from
+ * the next game, so a multi-hour conversion never starts over.
+ *
+ * Output, for an output name of out:
+ *
+ * <pre>
+ * out.bin   the games, as written by BinaryGameWriter
+ * out.idx   8 bytes per game, its offset in out.bin
+ * out.ckpt  the checkpoint; deleted once the conversion is complete
+ * </pre>
+ *
+ * Usage: java PgnConverter [--threads n] [--chunk n] out pgn-file...
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class PgnConverter {
+
+    private ForkJoinPool pool;
+    private int chunkSize;
+    private Path binPath;
+    private Path indexPath;
+    private Path checkpointPath;
+    private List<Path> inputs;
+
+    private BinaryGameWriter bin;
+    private FileChannel index;
+    private ByteBuffer indexBuffer = ByteBuffer.allocate(8 * 4096);
+    private long converted;
+    private long rejected;
+
+    /*
+    Converted is the outcome of one game: the game, or why it was left out.
+    */
+    private static final class Converted {
+
+        private final BinaryGame game;
+        private final String error;
+
+        Converted(BinaryGame game, String error) {
+            this.game = game;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Creates a PgnConverter with all required parameters.
+     *
+     * @param threads the number of parsing threads
+     * @param chunkSize the number of games parsed per chunk, which is also
+     *        how often a checkpoint is written
+     * @param out the output name; .bin, .idx and .ckpt are appended to it
+     * @param inputs the PGN files to convert, in order
+     */
+    public PgnConverter(int threads, int chunkSize, String out,
+        List<Path> inputs) {
+        if (threads < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("threads and chunkSize must be"
+                + " positive");
+        }
+        this.pool = new ForkJoinPool(threads);
+        this.chunkSize = chunkSize;
+        this.binPath = Paths.get(out + ".bin");
+        this.indexPath = Paths.get(out + ".idx");
+        this.checkpointPath = Paths.get(out + ".ckpt");
+        this.inputs = inputs;
+    }
+
+    /**
+     * Converts every input, resuming from the checkpoint if there is one.
+     *
+     * @throws IOException if an input cannot be read, the output cannot be
+     *         written, or the checkpoint belongs to a different job
+     */
+    public void run() throws IOException {
+        int firstFile = 0;
+        int firstGame = 0;
+        if (Files.exists(checkpointPath)) {
+            Properties checkpoint = new Properties();
+            try (Reader in = Files.newBufferedReader(checkpointPath)) {
+                checkpoint.load(in);
+            }
+            if (!inputs.toString().equals(checkpoint.getProperty("inputs"))) {
+                throw new IOException("Checkpoint " + checkpointPath
+                    + " is for other inputs: "
+                    + checkpoint.getProperty("inputs"));
+            }
+            firstFile = Integer.parseInt(checkpoint.getProperty("file"));
+            firstGame = Integer.parseInt(checkpoint.getProperty("game"));
+            converted = Long.parseLong(checkpoint.getProperty("converted"));
+            rejected = Long.parseLong(checkpoint.getProperty("rejected"));
+            bin = BinaryGameWriter.resume(binPath,
+                Long.parseLong(checkpoint.getProperty("bin")));
+            index = FileChannel.open(indexPath, StandardOpenOption.WRITE);
+            index.truncate(converted * 8);
+            index.position(converted * 8);
+            System.err.format("Resuming at game %d of %s%n", firstGame,
+                inputs.get(firstFile));
+        } else {
+            bin = BinaryGameWriter.create(binPath);
+            index = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        try {
+            for (int file = firstFile; file < inputs.size(); file++) {
+                convert(file, (file == firstFile) ? firstGame : 0);
+            }
+        } finally {
+            bin.close();
+            index.close();
+            pool.shutdown();
+        }
+        Files.deleteIfExists(checkpointPath);
+        System.err.format("%d games converted, %d rejected%n", converted,
+            rejected);
+    }
+
+    /*
+    convert runs the pipeline over one input: while chunk k is written and
+    checkpointed on this thread, chunk k + 1 is parsed on the pool.
+    */
+    private void convert(int file, int firstGame) throws IOException {
+        try (MappedPgnFile pgn = new MappedPgnFile(inputs.get(file))) {
+            ForkJoinTask<List<Converted>> running = null;
+            int runningEnd = firstGame;
+            for (int start = firstGame; start < pgn.gameCount();
+                start += chunkSize) {
+                int from = start;
+                int to = Math.min(pgn.gameCount(), start + chunkSize);
+                ForkJoinTask<List<Converted>> next = pool.submit(() ->
+                    IntStream.range(from, to).parallel()
+                        .mapToObj(i -> parse(pgn, i))
+                        .collect(Collectors.toList()));
+                write(running, file, runningEnd);
+                running = next;
+                runningEnd = to;
+            }
+            write(running, file, runningEnd);
+        }
+    }
+
+    /*
+    parse decodes the game as UTF-8 first, since the mapped bytes read as a
+    CharSequence are Latin-1 and would garble non-ASCII tags in the output.
+    Any failure to replay the game leaves out that game alone: an illegal
+    move is an IllegalArgumentException, and anything else the replay throws
+    must not stop the conversion, or a resumed run would stop at the same
+    game again.
+    */
+    private Converted parse(MappedPgnFile pgn, int game) {
+        try {
+            ByteSequence text = pgn.game(game);
+            return new Converted(BinaryGame.fromPgn(text.decode(0,
+                text.length(), StandardCharsets.UTF_8)), null);
+        } catch (IllegalArgumentException e) {
+            return new Converted(null, e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            return new Converted(null, e.toString());
+        }
+    }
+
+    /*
+    write appends one parsed chunk to the output, in game order, and then
+    checkpoints: the next game to convert is nextGame of inputs[file].
+    */
+    private void write(ForkJoinTask<List<Converted>> chunk, int file,
+        int nextGame) throws IOException {
+        if (chunk == null) {
+            return;
+        }
+        List<Converted> games;
+        try {
+            games = chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted during conversion", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        int game = nextGame - games.size();
+        for (Converted c : games) {
+            if (c.game == null) {
+                System.err.format("%s game %d rejected: %s%n",
+                    inputs.get(file), game, c.error);
+                rejected++;
+            } else {
+                if (!indexBuffer.hasRemaining()) {
+                    drainIndex();
+                }
+                indexBuffer.putLong(bin.write(c.game));
+                converted++;
+            }
+            game++;
+        }
+        checkpoint(file, nextGame);
+    }
+
+    private void drainIndex() throws IOException {
+        indexBuffer.flip();
+        while (indexBuffer.hasRemaining()) {
+            index.write(indexBuffer);
+        }
+        indexBuffer.clear();
+    }
+
+    /*
+    checkpoint forces the output to disk before recording it, and replaces
+    the checkpoint file with a rename, so a crash at any point leaves either
+    the old checkpoint or the new one, each describing data that is on disk.
+    */
+    private void checkpoint(int file, int nextGame) throws IOException {
+        bin.sync();
+        drainIndex();
+        index.force(false);
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("inputs", inputs.toString());
+        checkpoint.setProperty("file", Integer.toString(file));
+        checkpoint.setProperty("game", Integer.toString(nextGame));
+        checkpoint.setProperty("converted", Long.toString(converted));
+        checkpoint.setProperty("rejected", Long.toString(rejected));
+        checkpoint.setProperty("bin", Long.toString(bin.offset()));
+        Path temp = Paths.get(checkpointPath + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp)) {
+            checkpoint.store(out, "PgnConverter checkpoint");
+        }
+        Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkSize = 4096;
+        int i = 0;
+        while (i < args.length - 1 && args[i].startsWith("--")) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--chunk")) {
+                chunkSize = Integer.parseInt(args[i + 1]);
+            } else {
+                break;
+            }
+            i += 2;
+        }
+        if (args.length - i < 2) {
+            System.err.println("Usage: java PgnConverter [--threads n]"
+                + " [--chunk n] out pgn-file...");
+            System.exit(2);
+        }
+        List<Path> inputs = IntStream.range(i + 1, args.length)
+            .mapToObj(j -> Paths.get(args[j])).collect(Collectors.toList());
+        try {
+            new PgnConverter(threads, chunkSize, args[i], inputs).run();
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits a multi-game PGN source into single games as it is read. Only the
+ * game currently being assembled is kept in memory, so the size of the source
+ * does not matter.
+ *
+ * A new game starts at the first tag pair line ('[' in the first column) that
+ * follows movetext. Lines inside a brace comment are never treated as tag
+ * pairs.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class PgnGameReader implements Iterator<String>, Closeable {
+
+    private BufferedReader reader;
+    private StringBuilder game = new StringBuilder();
+    private String pendingLine;
+    private String nextGame;
+    private boolean finished;
+
+    /**
+     * Creates a PgnGameReader that pulls its text from reader.
+     *
+     * @param reader the source of the PGN text
+     */
+    public PgnGameReader(Reader reader) {
+        this.reader = (reader instanceof BufferedReader)
+            ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Creates a PgnGameReader that decodes the bytes of channel as UTF-8.
+     *
+     * @param channel an open channel positioned at the start of a game
+     */
+    public PgnGameReader(FileChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(),
+            -1));
+    }
+
+    /**
+     * Opens the file at path for streaming.
+     *
+     * @param path the PGN file to read
+     * @return a PgnGameReader over the file's games
+     * @throws IOException if the file cannot be opened
+     */
+    public static PgnGameReader open(Path path) throws IOException {
+        return new PgnGameReader(FileChannel.open(path,
+            StandardOpenOption.READ));
+    }
+
+    /**
+     * @param reader the source of the PGN text
+     * @return an ordered, sequential Stream of the games in reader. Closing
+     *         the stream closes reader.
+     */
+    public static Stream<String> games(Reader reader) {
+        PgnGameReader games = new PgnGameReader(reader);
+        return games.stream().onClose(games::closeUnchecked);
+    }
+
+    /**
+     * @return an ordered, sequential Stream of the remaining games
+     */
+    public Stream<String> stream() {
+        Spliterator<String> spliterator = Spliterators.spliteratorUnknownSize(
+            this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextGame == null && !finished) {
+            try {
+                nextGame = readGame();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = (nextGame == null);
+        }
+        return nextGame != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String result = nextGame;
+        nextGame = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void closeUnchecked() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    readGame collects lines into the reused StringBuilder until it sees the
+    tag pair line that opens the following game. That line is held back in
+    pendingLine so the next call can start with it. Blank lines before a game
+    are skipped, and a game with no movetext at all is still returned so that
+    tag-only entries are not lost.
+    */
+    private String readGame() throws IOException {
+        game.setLength(0);
+        boolean seenMoves = false;
+        boolean inComment = false;
+        String line = (pendingLine != null) ? pendingLine : reader.readLine();
+        pendingLine = null;
+        while (line != null) {
+            boolean isTag = !inComment && line.startsWith("[");
+            if (isTag && seenMoves) {
+                pendingLine = line;
+                break;
+            }
+            if (!line.trim().isEmpty() || game.length() > 0) {
+                game.append(line).append('\n');
+            }
+            if (!isTag) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (inComment) {
+                        // brace comments do not nest: the first '}' ends
+                        // the comment, as in PgnLexer
+                        inComment = c != '}';
+                    } else if (c == '{') {
+                        inComment = true;
+                    } else if (c == ';') {
+                        break;
+                    } else if (!Character.isWhitespace(c)) {
+                        seenMoves = true;
+                    }
+                }
+            }
+            line = reader.readLine();
+        }
+        return (game.length() == 0) ? null : game.toString();
+    }
+}
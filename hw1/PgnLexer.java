@@ -0,0 +1,244 @@
+/**
+ * Splits PGN text into tokens in a single left-to-right pass. The lexer
+ * works over any CharSequence, including a ByteSequence view of a mapped
+ * file, and only records where each token starts and ends, so reading a game
+ * allocates nothing unless the caller asks for a token's text.
+ *
+ * Typical use:
+ * <pre>
+ * PgnLexer lexer = new PgnLexer(game);
+ * for (Token t = lexer.next(); t != Token.END; t = lexer.next()) {
+ *     if (t == Token.MOVE &amp;&amp; lexer.depth() == 0) {
+ *         ... lexer.start(), lexer.end() ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c8.2
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class PgnLexer {
+
+    /**
+     * The kinds of token found in PGN text.
+     */
+    public enum Token {
+        /** A whole tag pair, brackets included, e.g. [Event "x"]. */
+        TAG,
+        /** A move number indication such as "12." or "12...". */
+        MOVE_NUMBER,
+        /** A move in SAN, annotation suffixes such as "!?" included. */
+        MOVE,
+        /** The text of a brace comment or a rest-of-line ';' comment. */
+        COMMENT,
+        /** A numeric annotation glyph such as "$1". */
+        NAG,
+        /** The '(' that opens a recursive annotation variation. */
+        VARIATION_START,
+        /** The ')' that closes a recursive annotation variation. */
+        VARIATION_END,
+        /** A game termination marker: "1-0", "0-1", "1/2-1/2" or "*". */
+        RESULT,
+        /** The end of the text. */
+        END
+    }
+
+    private CharSequence text;
+    private int pos;
+    private int start;
+    private int end;
+    private int depth;
+
+    /**
+     * Creates a PgnLexer positioned at the start of text.
+     *
+     * @param text the PGN text to split
+     */
+    public PgnLexer(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * @return the index in the text of the current token's first char
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return the index in the text after the current token's last char
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * @return how many variations enclose the current token. Moves of the
+     *         game itself are at depth 0.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * @return the text the lexer reads from
+     */
+    public CharSequence text() {
+        return text;
+    }
+
+    /**
+     * @return a new String holding the current token's text
+     */
+    public String tokenString() {
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return the kind of token found, or Token.END when the text is used up
+     */
+    public Token next() {
+        int length = text.length();
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '%' && (pos == 0 || text.charAt(pos - 1) == '\n')) {
+                // escape mechanism: the whole line is ignored
+                pos = lineEnd(pos);
+            } else if (Character.isWhitespace(c)) {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        start = pos;
+        if (pos >= length) {
+            end = pos;
+            return Token.END;
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+        case '[':
+            return finish(tagEnd(pos), Token.TAG);
+        case '{':
+            int close = pos + 1;
+            while (close < length && text.charAt(close) != '}') {
+                close++;
+            }
+            start = pos + 1;
+            end = close;
+            pos = Math.min(close + 1, length);
+            return Token.COMMENT;
+        case ';':
+            start = pos + 1;
+            end = lineEnd(pos);
+            pos = end;
+            return Token.COMMENT;
+        case '(':
+            depth++;
+            return finish(pos + 1, Token.VARIATION_START);
+        case ')':
+            Token result = finish(pos + 1, Token.VARIATION_END);
+            if (depth > 0) {
+                depth--;
+            }
+            return result;
+        case '$':
+            int digits = pos + 1;
+            while (digits < length && Character.isDigit(text.charAt(digits))) {
+                digits++;
+            }
+            return finish(digits, Token.NAG);
+        case '*':
+            return finish(pos + 1, Token.RESULT);
+        default:
+            break;
+        }
+        if (Character.isDigit(c)) {
+            int digits = pos;
+            while (digits < length && Character.isDigit(text.charAt(digits))) {
+                digits++;
+            }
+            if (digits < length && text.charAt(digits) == '.') {
+                while (digits < length && text.charAt(digits) == '.') {
+                    digits++;
+                }
+                return finish(digits, Token.MOVE_NUMBER);
+            }
+        }
+        int wordEnd = wordEnd(pos);
+        if (isResult(pos, wordEnd)) {
+            return finish(wordEnd, Token.RESULT);
+        }
+        if (regionEquals(pos, wordEnd, "e.p.")) {
+            // old-style en passant annotation; the move before it says it all
+            pos = wordEnd;
+            return next();
+        }
+        return finish(wordEnd, Token.MOVE);
+    }
+
+    private Token finish(int tokenEnd, Token token) {
+        end = tokenEnd;
+        pos = tokenEnd;
+        return token;
+    }
+
+    private int lineEnd(int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private int tagEnd(int from) {
+        int i = from + 1;
+        boolean quoted = false;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (quoted && c == '\\') {
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == ']') {
+                return i + 1;
+            }
+            i++;
+        }
+        return text.length();
+    }
+
+    private int wordEnd(int from) {
+        int i = from;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '{' || c == '}' || c == '('
+                || c == ')' || c == ';' || c == '[' || c == ']' || c == '$') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isResult(int from, int to) {
+        return regionEquals(from, to, "1-0") || regionEquals(from, to, "0-1")
+            || regionEquals(from, to, "1/2-1/2");
+    }
+
+    private boolean regionEquals(int from, int to, String s) {
+        if (to - from != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(from + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,6 +3,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PgnReader {
     /**
@@ -15,14 +17,7 @@ public class PgnReader {
      * @return the value in the named tag pair
      */
     public static String tagValue(String tagName, String game) {
-        int index = game.indexOf(tagName);
-        if (index == -1) {
-            return "NOT GIVEN";
-        }
-        int startIndex = index + tagName.length() + 2;
-        int endIndex = game.indexOf("\"", startIndex);
-        String result = game.substring(startIndex, endIndex);
-        return result;
+        return PgnTags.parse(game).value(tagName);
     }
     /**
      * Play out the moves in game and return a String with the game's
@@ -34,50 +29,41 @@ public class PgnReader {
      * @return the game's final position in FEN.
      */
     public static String finalPosition(String game) {
-        char[][] boardState =
-            {{'r', 'n', 'b', 'q', 'k', 'b', 'n', 'r'},
-            {'p', 'p', 'p', 'p', 'p', 'p', 'p', 'p'},
-            {'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'},
-            {'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'},
-            {'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'},
-            {'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'},
-            {'P', 'P', 'P', 'P', 'P', 'P', 'P', 'P'},
-            {'R', 'N', 'B', 'Q', 'K', 'B', 'N', 'R'}};
-        String[] moves = infoExtract(game);
-        int count = 0;
-        // loop that iterates through a String[] called moves (which contains
-        // the moves in one game) and passes them into the boardUpdate method
-        // along with the current board state and color of the player who has
-        // made the move.
-        for (String m : moves) {
-            disambiguate(m);
-            boolean color = ((count % 2) == 0) ? true : false;
-            boardUpdate(boardState, m, color);
-            count++;
-        }
-        int spaces = 0;
-        String finalPosition = "";
-        for (int i = 0; i < boardState.length; i++) {
-            spaces = 0;
-            for (char j : boardState[i]) {
-                if (j == 'x') {
-                    spaces += 1;
-                } else if (spaces > 0) {
-                    finalPosition += spaces;
-                    finalPosition += j;
-                    spaces = 0;
-                } else {
-                    finalPosition += j;
-                }
-            }
-            if (spaces > 0) {
-                finalPosition += spaces;
-            }
-            if (i != (boardState.length - 1)) {
-                finalPosition += '/';
+        return new FenWriter().placement(replay(game));
+    }
+    /**
+     * Play out the moves in game and return the game's final position as a
+     * complete six-field FEN, including side to move, castling rights, en
+     * passant square and the move clocks.
+     *
+     * @param game the text of a PGN-formatted chess game or opening
+     * @param writer the FenWriter to reuse for the output
+     * @return the game's final position in FEN.
+     */
+    public static String finalFen(CharSequence game, FenWriter writer) {
+        return writer.fen(replay(game));
+    }
+    /**
+     * @param game a `String` containing a PGN-formatted chess game or opening
+     * @return the game's final position as a complete six-field FEN
+     */
+    public static String finalFen(String game) {
+        return finalFen(game, new FenWriter());
+    }
+    /**
+     * Plays out the moves in game on a bitboard Position, which keeps track
+     * of whose turn it is and matches each move against its legal moves.
+     */
+    private static Position replay(CharSequence game) {
+        Position position = new Position();
+        PgnLexer lexer = new PgnLexer(game);
+        for (PgnLexer.Token t = lexer.next(); t != PgnLexer.Token.END;
+            t = lexer.next()) {
+            if (t == PgnLexer.Token.MOVE && lexer.depth() == 0) {
+                position.playSan(lexer.text(), lexer.start(), lexer.end());
             }
         }
-        return finalPosition;
+        return position;
     }
     public static void printBoard(char[][] board) {
         for (char[] i : board) {
@@ -1050,31 +1036,22 @@ public class PgnReader {
     }
     /**
     * The infoExtract method takes in a String with the PGN-formatted game
-    * information and returns a String[] (called "result") containing only the
-    * moves made in the game. The method first finds the index where the moves
-    * first appear in the String and splits it between the spaces. Second, to
-    * get rid of the unnecessary elements (such as "1.") a initializer variables
-    * and a for loop are created to iterate through the moves array (called
-    * "sArray"). This loop iterates  through the entirety of the array, but only
-    * adds the value of every second and third element of sArray to the returned
-    * String[] result.
+    * information and returns a String[] containing only the moves made in the
+    * game, in order. The game is read once by a PgnLexer, which tells move
+    * tokens apart from tag pairs, move numbers, comments, NAGs and results, so
+    * nothing has to be filtered out by what characters a token contains.
+    * Moves inside variations are skipped.
     */
     public static String[] infoExtract(String game) {
-        int index = game.indexOf("1. ");
-        String rawMoves = game.substring(index, game.length());
-        String[] linesArray = rawMoves.split("\n");
-        String resultString = "";
-        for (String line : linesArray) {
-            String[] movesArray = line.split(" ");
-            for (String s2 : movesArray) {
-                if (!s2.contains(".") && !s2.contains("0")
-                    && (!s2.contains("1/2"))) {
-                    resultString += " " + s2;
-                }
+        List<String> moves = new ArrayList<>();
+        PgnLexer lexer = new PgnLexer(game);
+        for (PgnLexer.Token t = lexer.next(); t != PgnLexer.Token.END;
+            t = lexer.next()) {
+            if (t == PgnLexer.Token.MOVE && lexer.depth() == 0) {
+                moves.add(lexer.tokenString());
             }
         }
-        String[] resultArray = resultString.trim().split(" ");
-        return resultArray;
+        return moves.toArray(new String[moves.size()]);
     }
     /**
      * Reads the file named by path and returns its content as a String.
@@ -1098,17 +1075,72 @@ public class PgnReader {
         return sb.toString();
     }
 
-    public static void main(String[] args) {
-        String game = fileContent(args[0]);
-        System.out.format("Event: %s%n", tagValue("Event", game));
-        System.out.format("Site: %s%n", tagValue("Site", game));
-        System.out.format("Date: %s%n", tagValue("Date", game));
-        System.out.format("Round: %s%n", tagValue("Round", game));
-        System.out.format("White: %s%n", tagValue("White", game));
-        System.out.format("Black: %s%n", tagValue("Black", game));
-        System.out.format("Result: %s%n", tagValue("Result", game));
+    /**
+     * The seven tag roster, in the order PGN export writes it.
+     */
+    public static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date",
+        "Round", "White", "Black", "Result"};
+
+    /**
+     * Prints the seven tag roster and final position of one game.
+     *
+     * @param game a `String` containing the PGN text of a chess game
+     */
+    public static void printGame(String game) {
+        PgnTags tags = PgnTags.parse(game);
+        for (String tag : SEVEN_TAG_ROSTER) {
+            System.out.format("%s: %s%n", tag, tags.value(tag));
+        }
         System.out.println("Final Position:");
         System.out.println(finalPosition(game));
+    }
+
+    /**
+     * Prints every game of a memory-mapped file. Tags are parsed straight
+     * from the mapping and only the movetext of each game is turned into a
+     * String for replay.
+     *
+     * @param path the PGN file to map
+     * @throws IOException if the file cannot be mapped
+     */
+    public static void printMapped(Path path) throws IOException {
+        try (MappedPgnFile pgn = new MappedPgnFile(path)) {
+            for (int i = 0; i < pgn.gameCount(); i++) {
+                if (i > 0) {
+                    System.out.println();
+                }
+                PgnTags tags = pgn.tags(i);
+                for (String tag : SEVEN_TAG_ROSTER) {
+                    System.out.format("%s: %s%n", tag, tags.value(tag));
+                }
+                System.out.println("Final Position:");
+                System.out.println(finalPosition(pgn.movetext(i).toString()));
+            }
+        }
+    }
 
+    public static void main(String[] args) {
+        try {
+            if (args[0].equals("--mmap")) {
+                printMapped(Paths.get(args[1]));
+                return;
+            }
+            // games are streamed one at a time so multi-game archives of any
+            // size can be read without holding the whole file in memory
+            try (PgnGameReader games =
+                PgnGameReader.open(Paths.get(args[0]))) {
+                boolean first = true;
+                while (games.hasNext()) {
+                    if (!first) {
+                        System.out.println();
+                    }
+                    printGame(games.next());
+                    first = false;
+                }
+            }
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        }
     }
 }
@@ -0,0 +1,115 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The tag pair section of one PGN game, parsed in a single pass. Every tag is
+ * read once into a map from tag name to value, so looking up any of the seven
+ * standard tags, or any custom tag, is a hash lookup instead of a search
+ * through the game text. Only real tag pairs are read: a tag name that shows
+ * up inside another tag's value or in a comment is never matched.
+ *
+ * @see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c8.1
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class PgnTags {
+
+    private Map<String, String> tags = new LinkedHashMap<>();
+
+    private PgnTags() {
+    }
+
+    /**
+     * Reads the tag pairs at the start of game. Parsing stops at the first
+     * token of movetext.
+     *
+     * @param game the text of a PGN game
+     * @return the game's tag pairs
+     */
+    public static PgnTags parse(CharSequence game) {
+        PgnTags result = new PgnTags();
+        PgnLexer lexer = new PgnLexer(game);
+        for (PgnLexer.Token t = lexer.next(); t == PgnLexer.Token.TAG
+            || t == PgnLexer.Token.COMMENT; t = lexer.next()) {
+            if (t == PgnLexer.Token.TAG) {
+                result.add(game, lexer.start(), lexer.end());
+            }
+        }
+        return result;
+    }
+
+    /*
+    add reads one [Name "value"] token found between from and to. A repeated
+    tag keeps its first value, the way a search from the start of the game
+    would find it.
+    */
+    private void add(CharSequence game, int from, int to) {
+        int i = from + 1;
+        while (i < to && Character.isWhitespace(game.charAt(i))) {
+            i++;
+        }
+        int nameStart = i;
+        while (i < to && (Character.isLetterOrDigit(game.charAt(i))
+            || game.charAt(i) == '_')) {
+            i++;
+        }
+        int nameEnd = i;
+        while (i < to && game.charAt(i) != '"') {
+            i++;
+        }
+        if (nameEnd == nameStart || i >= to) {
+            return;
+        }
+        StringBuilder value = new StringBuilder();
+        for (i++; i < to && game.charAt(i) != '"'; i++) {
+            char c = game.charAt(i);
+            if (c == '\\' && i + 1 < to) {
+                c = game.charAt(++i);
+            }
+            value.append(c);
+        }
+        tags.putIfAbsent(game.subSequence(nameStart, nameEnd).toString(),
+            value.toString());
+    }
+
+    /**
+     * @param tagName the name of a tag
+     * @return the tag's value, or null if the game does not have the tag
+     */
+    public String get(String tagName) {
+        return tags.get(tagName);
+    }
+
+    /**
+     * @param tagName the name of a tag
+     * @return the tag's value, or "NOT GIVEN" like PgnReader.tagValue if the
+     *         game does not have the tag
+     */
+    public String value(String tagName) {
+        return tags.getOrDefault(tagName, "NOT GIVEN");
+    }
+
+    /**
+     * @return every tag of the game in the order it was written, as an
+     *         unmodifiable map from tag name to value
+     */
+    public Map<String, String> asMap() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * @param filter tag names and the values they must have
+     * @return true if the game has every tag in filter with exactly the
+     *         value given
+     */
+    public boolean matches(Map<String, String> filter) {
+        for (Map.Entry<String, String> e : filter.entrySet()) {
+            if (!e.getValue().equals(tags.get(e.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,665 @@
+import java.util.Arrays;
+
+/**
+ * A chess position stored as bitboards: one 64-bit set of squares for each
+ * of the twelve kinds of piece, plus one per color. A plain array from square
+ * to piece is kept alongside so the piece on a square can be read without
+ * testing twelve bitboards.
+ *
+ * Squares are numbered as in Bitboards, a1 = 0 to h8 = 63. A piece is
+ * color * 6 + type, so white pieces are 0 to 5 and black pieces 6 to 11.
+ *
+ * Every position carries a Zobrist key that is updated as moves are played,
+ * so two positions can be compared, or used as a hash key, without writing
+ * out their FENs. The sums of the Evaluation piece-square tables and the
+ * game phase are kept up to date the same way.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class Position {
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int EMPTY = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    /**
+     * The FEN letter of each piece, indexed by piece.
+     */
+    public static final String PIECE_CHARS = "PNBRQKpnbrqk";
+
+    // the home square of the rook for each castling right, in bit order
+    private static final int[] CASTLING_ROOKS = {7, 0, 63, 56};
+    // castling rights that survive a move from or to each square
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            CASTLING_KEPT[sq] = 15;
+        }
+        CASTLING_KEPT[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_KEPT[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_KEPT[7] &= ~WHITE_KINGSIDE;
+        CASTLING_KEPT[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_KEPT[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_KEPT[63] &= ~BLACK_KINGSIDE;
+    }
+
+    private long[] pieces = new long[12];
+    private long[] colors = new long[2];
+    private int[] board = new int[64];
+    private int sideToMove = WHITE;
+    private int castling = 15;
+    private int epSquare = -1;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long key;
+    // the same, over the pawns alone
+    private long pawnKey;
+    // sums of Evaluation's tables over the pieces on the board, for white
+    private int middlegame;
+    private int endgame;
+    private int phase;
+    // two longs per made move: the key before it, then the move, captured
+    // piece, castling rights, en passant square and halfmove clock packed
+    // together, so unmakeMove can restore them
+    private long[] undo = new long[64];
+    private int undoSize;
+    // scratch space for playSan, allocated on first use
+    private int[] legalMoves;
+
+    /**
+     * Creates a Position holding the standard starting position.
+     */
+    public Position() {
+        for (int sq = 0; sq < 64; sq++) {
+            board[sq] = EMPTY;
+        }
+        String backRank = "RNBQKBNR";
+        for (int file = 0; file < 8; file++) {
+            int type = "PNBRQK".indexOf(backRank.charAt(file));
+            put(file, WHITE * 6 + type);
+            put(8 + file, WHITE * 6 + PAWN);
+            put(48 + file, BLACK * 6 + PAWN);
+            put(56 + file, BLACK * 6 + type);
+        }
+        key ^= stateKey();
+    }
+
+    /**
+     * Creates a Position from Forsyth-Edwards Notation. The halfmove clock and
+     * fullmove number may be left off, as they often are in test suites.
+     * Castling rights whose king or rook is not on its home square are
+     * dropped.
+     *
+     * @param fen the position in FEN, e.g. as written by FenWriter
+     * @throws IllegalArgumentException if fen cannot be read, or does not
+     *         have exactly one king of each color
+     */
+    public Position(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Unreadable FEN: " + fen);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            board[sq] = EMPTY;
+        }
+        int rank = 7;
+        int file = 0;
+        for (char c : fields[0].toCharArray()) {
+            int piece = PIECE_CHARS.indexOf(c);
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else if (piece >= 0 && rank >= 0 && file < 8) {
+                put(rank * 8 + file++, piece);
+            } else {
+                throw new IllegalArgumentException("Unreadable FEN: " + fen);
+            }
+        }
+        // move generation and check detection assume both kings are there
+        if (Long.bitCount(pieces[WHITE * 6 + KING]) != 1
+            || Long.bitCount(pieces[BLACK * 6 + KING]) != 1) {
+            throw new IllegalArgumentException("FEN needs one king of each"
+                + " color: " + fen);
+        }
+        sideToMove = fields[1].equals("b") ? BLACK : WHITE;
+        castling = 0;
+        for (char c : fields[2].toCharArray()) {
+            int right = "KQkq".indexOf(c);
+            if (right >= 0) {
+                castling |= 1 << right;
+            }
+        }
+        // a right whose king or rook has left its square can never be
+        // used, and castling without the rook would corrupt the board
+        for (int right = 0; right < 4; right++) {
+            int color = right / 2;
+            int rook = CASTLING_ROOKS[right];
+            if (board[rook] != color * 6 + ROOK
+                || board[rook & 56 | 4] != color * 6 + KING) {
+                castling &= ~(1 << right);
+            }
+        }
+        if (fields[3].length() == 2) {
+            epSquare = (fields[3].charAt(1) - '1') * 8
+                + (fields[3].charAt(0) - 'a');
+        }
+        try {
+            if (fields.length > 5) {
+                halfmoveClock = Integer.parseInt(fields[4]);
+                fullmoveNumber = Integer.parseInt(fields[5]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unreadable FEN: " + fen, e);
+        }
+        key ^= stateKey();
+    }
+
+    /**
+     * Creates a Position that is a copy of other.
+     *
+     * @param other the position to copy
+     */
+    public Position(Position other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Makes this position a copy of other without allocating anything, so a
+     * search can keep one Position per ply and copy into it. The moves made
+     * on other are not copied: the copy has nothing to unmake.
+     *
+     * @param other the position to copy
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        System.arraycopy(other.colors, 0, colors, 0, 2);
+        System.arraycopy(other.board, 0, board, 0, 64);
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        key = other.key;
+        pawnKey = other.pawnKey;
+        middlegame = other.middlegame;
+        endgame = other.endgame;
+        phase = other.phase;
+        undoSize = 0;
+    }
+
+    /**
+     * @param color WHITE or BLACK
+     * @param type PAWN, KNIGHT, BISHOP, ROOK, QUEEN or KING
+     * @return the squares holding that color's pieces of that type
+     */
+    public long pieces(int color, int type) {
+        return pieces[color * 6 + type];
+    }
+
+    /**
+     * @param color WHITE or BLACK
+     * @return the squares holding that color's pieces
+     */
+    public long pieces(int color) {
+        return colors[color];
+    }
+
+    /**
+     * @return every occupied square
+     */
+    public long occupied() {
+        return colors[WHITE] | colors[BLACK];
+    }
+
+    /**
+     * @param sq a square from 0 (a1) to 63 (h8)
+     * @return the piece on sq, or EMPTY
+     */
+    public int pieceAt(int sq) {
+        return board[sq];
+    }
+
+    /**
+     * @return WHITE or BLACK
+     */
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * @return the castling rights still held, as a combination of
+     *         WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and
+     *         BLACK_QUEENSIDE
+     */
+    public int castlingRights() {
+        return castling;
+    }
+
+    /**
+     * @return the square a pawn skipped over on the last move, or -1
+     */
+    public int epSquare() {
+        return epSquare;
+    }
+
+    /**
+     * @return the number of half moves since the last capture or pawn move
+     */
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return the number of the current move, starting at 1 and increasing
+     *         after each of black's moves
+     */
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return the Zobrist key of this position. Positions with the same
+     *         pieces, side to move, castling rights and en passant capture
+     *         have the same key; the move clocks are not part of it.
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * @return a Zobrist key of the pawns alone, so positions with the same
+     *         pawns on the same squares share it whatever else differs
+     */
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * @return the sum of Evaluation.MIDDLEGAME over the pieces on the board
+     */
+    public int middlegameScore() {
+        return middlegame;
+    }
+
+    /**
+     * @return the sum of Evaluation.ENDGAME over the pieces on the board
+     */
+    public int endgameScore() {
+        return endgame;
+    }
+
+    /**
+     * @return the game phase: the sum of Evaluation.PHASE over the pieces
+     *         on the board
+     */
+    public int phase() {
+        return phase;
+    }
+
+    /**
+     * @return the material signature of this position: how many of each of
+     *         the twelve pieces are on the board, four bits per piece in
+     *         piece order. Unlike key() it is exact, not a hash.
+     */
+    public long materialKey() {
+        long result = 0L;
+        for (int piece = 0; piece < 12; piece++) {
+            result |= (long) Long.bitCount(pieces[piece]) << (piece * 4);
+        }
+        return result;
+    }
+
+    /**
+     * @param signature the pieces on the board as FEN letters in any order,
+     *        e.g. "KRPkr" for king, rook and pawn against king and rook
+     * @return the materialKey() of every position with exactly those pieces
+     * @throws IllegalArgumentException if signature holds anything but piece
+     *         letters, or more than fifteen of one piece
+     */
+    public static long materialKey(String signature) {
+        long result = 0L;
+        for (char c : signature.toCharArray()) {
+            int piece = PIECE_CHARS.indexOf(c);
+            if (piece < 0 || ((result >>> (piece * 4)) & 15) == 15) {
+                throw new IllegalArgumentException("Unreadable material: "
+                    + signature);
+            }
+            result += 1L << (piece * 4);
+        }
+        return result;
+    }
+
+    /*
+    stateKey returns the part of the key that is not pieces on squares. The
+    en passant file only counts when a pawn of the side to move can actually
+    capture there, so a double push nobody can take does not make a position
+    look different from the same position reached another way.
+    */
+    private long stateKey() {
+        long result = Zobrist.CASTLING[castling];
+        if (sideToMove == BLACK) {
+            result ^= Zobrist.BLACK_TO_MOVE;
+        }
+        if (epSquare >= 0 && (Bitboards.PAWN_ATTACKS[sideToMove ^ 1][epSquare]
+            & pieces[sideToMove * 6 + PAWN]) != 0) {
+            result ^= Zobrist.EP_FILE[epSquare & 7];
+        }
+        return result;
+    }
+
+    /**
+     * @param color WHITE or BLACK
+     * @return the square of that color's king, or 64 if it has none
+     */
+    public int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[color * 6 + KING]);
+    }
+
+    /**
+     * @param sq a square from 0 (a1) to 63 (h8)
+     * @param color WHITE or BLACK
+     * @return true if any piece of color attacks sq
+     */
+    public boolean isAttacked(int sq, int color) {
+        return attackers(sq, color, occupied(), -1L) != 0;
+    }
+
+    /**
+     * @param sq a square from 0 (a1) to 63 (h8)
+     * @param color WHITE or BLACK
+     * @param occupied the squares to treat as occupied, which need not be
+     *        the real ones, e.g. to look through a piece that is moving away
+     * @return the pieces of color that attack sq
+     */
+    public long attackersTo(int sq, int color, long occupied) {
+        return attackers(sq, color, occupied, -1L);
+    }
+
+    /**
+     * @return true if the side to move is in check
+     */
+    public boolean inCheck() {
+        int king = kingSquare(sideToMove);
+        return king < 64 && isAttacked(king, sideToMove ^ 1);
+    }
+
+    /**
+     * Only positions reached with makeMove are remembered, and none from
+     * before the last capture or pawn move can repeat, so the check looks at
+     * no more than halfmoveClock keys.
+     *
+     * @return true if this position occurred before, with the same side to
+     *         move, among the moves made with makeMove
+     */
+    public boolean isRepetition() {
+        int plies = 2;
+        for (int i = undoSize - 4; i >= 0 && plies <= halfmoveClock;
+            i -= 4) {
+            if (undo[i] == key) {
+                return true;
+            }
+            plies += 2;
+        }
+        return false;
+    }
+
+    /*
+    attackers returns the pieces of color that attack sq when the board holds
+    exactly the pieces in occupied. Pieces outside alive are ignored, which
+    lets a legality test pretend a captured piece is already gone.
+    */
+    private long attackers(int sq, int color, long occupied, long alive) {
+        int base = color * 6;
+        long diagonal = pieces[base + BISHOP] | pieces[base + QUEEN];
+        long straight = pieces[base + ROOK] | pieces[base + QUEEN];
+        long result = (Bitboards.KNIGHT_ATTACKS[sq] & pieces[base + KNIGHT])
+            | (Bitboards.KING_ATTACKS[sq] & pieces[base + KING])
+            | (Bitboards.PAWN_ATTACKS[color ^ 1][sq] & pieces[base + PAWN])
+            | (Bitboards.bishopAttacks(sq, occupied) & diagonal)
+            | (Bitboards.rookAttacks(sq, occupied) & straight);
+        return result & alive;
+    }
+
+    /**
+     * Plays a move written in Standard Algebraic Notation for the side to
+     * move. Check, mate and annotation suffixes are ignored. The move is
+     * matched against the legal moves of the position, so a move that is
+     * not legal is refused and the position is left as it was.
+     *
+     * @param san the move, e.g. "Nbxd7=Q+", "e4" or "O-O"
+     * @return the move played, packed as in Move
+     * @throws IllegalArgumentException if the move cannot be read or does
+     *         not match exactly one legal move
+     */
+    public int playSan(String san) {
+        return playSan(san, 0, san.length());
+    }
+
+    /**
+     * Plays a move written in Standard Algebraic Notation, read straight
+     * from a range of text such as a PgnLexer token. Unless the move is
+     * illegal nothing is allocated, beyond one move list the first time.
+     *
+     * @param text the text holding the move
+     * @param start the index of the move's first char
+     * @param end the index after the move's last char
+     * @return the move played, packed as in Move
+     * @throws IllegalArgumentException if the move cannot be read or does
+     *         not match exactly one legal move
+     */
+    public int playSan(CharSequence text, int start, int end) {
+        int san = SanDecoder.decode(text, start, end);
+        if (san == SanDecoder.INVALID) {
+            throw rejected("Unreadable move: ", text, start, end);
+        }
+        if (legalMoves == null) {
+            legalMoves = new int[MoveGenerator.MAX_MOVES];
+        }
+        int count = MoveGenerator.legalMoves(this, legalMoves);
+        int move = Move.NONE;
+        int matches = 0;
+        for (int i = 0; i < count; i++) {
+            if (matches(legalMoves[i], san)) {
+                move = legalMoves[i];
+                matches++;
+            }
+        }
+        if (matches != 1) {
+            throw rejected(matches == 0 ? "Illegal move: "
+                : "Ambiguous move: ", text, start, end);
+        }
+        play(move);
+        return move;
+    }
+
+    /*
+    matches reports whether a legal move is the one a SAN descriptor
+    describes. A king stepping two squares is only ever written as castling,
+    and a promotion only matches a move that names the same piece, so "e8"
+    alone and "e4=Q" match nothing.
+    */
+    private boolean matches(int move, int san) {
+        int flags = Move.flags(move);
+        boolean castles = flags == Move.KING_CASTLE
+            || flags == Move.QUEEN_CASTLE;
+        if (SanDecoder.isCastle(san)) {
+            return castles && (flags == Move.QUEEN_CASTLE)
+                == SanDecoder.isQueensideCastle(san);
+        }
+        int from = Move.from(move);
+        int fromFile = SanDecoder.fromFile(san);
+        int fromRank = SanDecoder.fromRank(san);
+        return !castles && Move.to(move) == SanDecoder.target(san)
+            && board[from] % 6 == SanDecoder.piece(san)
+            && Move.promotionType(move) == SanDecoder.promotion(san)
+            && (fromFile < 0 || (from & 7) == fromFile)
+            && (fromRank < 0 || (from >>> 3) == fromRank);
+    }
+
+    private static IllegalArgumentException rejected(String reason,
+        CharSequence text, int start, int end) {
+        return new IllegalArgumentException(reason
+            + text.subSequence(start, end));
+    }
+
+    /**
+     * Plays a packed move, as made by Move or MoveGenerator, for the side to
+     * move. The move is not checked for legality.
+     *
+     * @param move the packed move
+     */
+    public void play(int move) {
+        apply(Move.from(move), Move.to(move), Move.promotionType(move));
+    }
+
+    /**
+     * Plays a packed move like play, but remembers what the move destroys so
+     * that unmakeMove can take it back. Making and unmaking a move costs the
+     * same whatever the length of the game, which lets a search walk a tree
+     * of variations on a single Position.
+     *
+     * @param move the packed move, assumed legal
+     */
+    public void makeMove(int move) {
+        int to = Move.to(move);
+        int captured = board[to];
+        if (Move.flags(move) == Move.EN_PASSANT) {
+            captured = (sideToMove ^ 1) * 6 + PAWN;
+        }
+        if (undoSize == undo.length) {
+            undo = Arrays.copyOf(undo, undoSize * 2);
+        }
+        undo[undoSize++] = key;
+        undo[undoSize++] = (move & 0xffffL) | (long) (captured + 1) << 16
+            | (long) castling << 20 | (long) (epSquare + 1) << 24
+            | (long) halfmoveClock << 32;
+        apply(Move.from(move), to, Move.promotionType(move));
+    }
+
+    /**
+     * Takes back the last move made with makeMove.
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void unmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        long state = undo[--undoSize];
+        long oldKey = undo[--undoSize];
+        int move = (int) (state & 0xffff);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = (int) ((state >>> 16) & 15) - 1;
+        sideToMove ^= 1;
+        if (sideToMove == BLACK) {
+            fullmoveNumber--;
+        }
+        int piece = board[to];
+        remove(to);
+        put(from, Move.isPromotion(move) ? sideToMove * 6 + PAWN : piece);
+        int flags = Move.flags(move);
+        if (flags == Move.KING_CASTLE || flags == Move.QUEEN_CASTLE) {
+            int rookFrom = (flags == Move.KING_CASTLE) ? from + 3 : from - 4;
+            int rookTo = (flags == Move.KING_CASTLE) ? from + 1 : from - 1;
+            put(rookFrom, board[rookTo]);
+            remove(rookTo);
+        }
+        if (flags == Move.EN_PASSANT) {
+            put((sideToMove == WHITE) ? to - 8 : to + 8, captured);
+        } else if (captured != EMPTY) {
+            put(to, captured);
+        }
+        castling = (int) ((state >>> 20) & 15);
+        epSquare = (int) ((state >>> 24) & 127) - 1;
+        halfmoveClock = (int) (state >>> 32);
+        key = oldKey;
+    }
+
+    /*
+    apply moves the piece on from to to and updates everything that follows
+    from it: the captured piece (including a pawn taken en passant), the rook
+    of a castling king, promotion, castling rights, the en passant square, the
+    move clocks, the side to move and the key. The move is assumed to be
+    legal.
+    */
+    private void apply(int from, int to, int promotion) {
+        key ^= stateKey();
+        int piece = board[from];
+        int type = piece % 6;
+        if (type == PAWN || board[to] != EMPTY) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+        if (sideToMove == BLACK) {
+            fullmoveNumber++;
+        }
+        if (board[to] != EMPTY) {
+            remove(to);
+        }
+        if (type == PAWN && to == epSquare) {
+            remove((sideToMove == WHITE) ? to - 8 : to + 8);
+        }
+        remove(from);
+        put(to, (promotion == EMPTY) ? piece : sideToMove * 6 + promotion);
+        if (type == KING && Math.abs(to - from) == 2) {
+            int rookFrom = (to > from) ? from + 3 : from - 4;
+            int rookTo = (to > from) ? from + 1 : from - 1;
+            int rook = board[rookFrom];
+            remove(rookFrom);
+            put(rookTo, rook);
+        }
+        castling &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        epSquare = (type == PAWN && Math.abs(to - from) == 16)
+            ? (from + to) / 2 : -1;
+        sideToMove ^= 1;
+        key ^= stateKey();
+    }
+
+    private void put(int sq, int piece) {
+        long bit = 1L << sq;
+        pieces[piece] |= bit;
+        colors[piece / 6] |= bit;
+        board[sq] = piece;
+        key ^= Zobrist.PIECES[piece][sq];
+        if (piece % 6 == PAWN) {
+            pawnKey ^= Zobrist.PIECES[piece][sq];
+        }
+        middlegame += Evaluation.MIDDLEGAME[piece][sq];
+        endgame += Evaluation.ENDGAME[piece][sq];
+        phase += Evaluation.PHASE[piece % 6];
+    }
+
+    private void remove(int sq) {
+        int piece = board[sq];
+        long bit = 1L << sq;
+        pieces[piece] &= ~bit;
+        colors[piece / 6] &= ~bit;
+        board[sq] = EMPTY;
+        key ^= Zobrist.PIECES[piece][sq];
+        if (piece % 6 == PAWN) {
+            pawnKey ^= Zobrist.PIECES[piece][sq];
+        }
+        middlegame -= Evaluation.MIDDLEGAME[piece][sq];
+        endgame -= Evaluation.ENDGAME[piece][sq];
+        phase -= Evaluation.PHASE[piece % 6];
+    }
+}
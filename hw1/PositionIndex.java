@@ -0,0 +1,401 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An index of the positions reached in a PGN file. For every position it
+ * holds a posting list of the games that reached it, and the same for every
+ * material signature, so finding the games that reached a FEN or an ending
+ * is a binary search instead of a replay of the whole file. Each game is
+ * listed by number together with its byte offset in the PGN file, and can
+ * then be read by seeking straight to it.
+ *
+ * Positions are keyed by Position.key() and material by
+ * Position.materialKey(). A game is listed once per key however often it
+ * reaches the position, and the lists are in game order. Games are numbered
+ * as in MappedPgnFile; a game that cannot be replayed keeps its number and
+ * offset but is in no posting list.
+ *
+ * <pre>
+ * header     8 bytes magic, then 8 bytes each for the number of games,
+ *            position records and material records
+ * offsets    8 bytes per game, its offset in the PGN file
+ * positions  12 bytes per record, an 8-byte key and a 4-byte game number,
+ *            sorted by key and game
+ * material   the same, for material keys
+ * </pre>
+ *
+ * Usage: java PositionIndex build index-file pgn-file
+ *        java PositionIndex fen index-file pgn-file fen
+ *        java PositionIndex material index-file pgn-file signature
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class PositionIndex implements Closeable {
+
+    private static final long MAGIC = 0x504f53494e444558L;
+    private static final int HEADER = 32;
+    private static final int RECORD = 12;
+
+    private FileChannel channel;
+    private MappedByteBuffer offsets;
+    private Postings positions;
+    private Postings material;
+
+    /*
+    Postings is one sorted section of records, mapped in windows small enough
+    for a MappedByteBuffer.
+    */
+    private static final class Postings {
+
+        private static final int WINDOW_BITS = 27;
+        private static final int WINDOW_MASK = (1 << WINDOW_BITS) - 1;
+
+        private MappedByteBuffer[] windows;
+        private long size;
+
+        Postings(FileChannel channel, long start, long size)
+            throws IOException {
+            this.size = size;
+            long windowRecords = 1L << WINDOW_BITS;
+            int count = (int) ((size + windowRecords - 1) / windowRecords);
+            windows = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long first = i * windowRecords;
+                long records = Math.min(windowRecords, size - first);
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    start + first * RECORD, records * RECORD);
+            }
+        }
+
+        private long keyAt(long record) {
+            return windows[(int) (record >>> WINDOW_BITS)].getLong(
+                (int) (record & WINDOW_MASK) * RECORD);
+        }
+
+        private int gameAt(long record) {
+            return windows[(int) (record >>> WINDOW_BITS)].getInt(
+                (int) (record & WINDOW_MASK) * RECORD + 8);
+        }
+
+        int[] games(long key) {
+            long low = 0;
+            long high = size;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (keyAt(mid) < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            long end = low;
+            while (end < size && keyAt(end) == key) {
+                end++;
+            }
+            int[] result = new int[(int) (end - low)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = gameAt(low + i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Maps an index written by Builder.
+     *
+     * @param path the index file
+     * @throws IOException if the file cannot be mapped or is not an index
+     */
+    public PositionIndex(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() < HEADER) {
+            channel.close();
+            throw new IOException("Not a position index: " + path);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+            HEADER);
+        if (header.getLong(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a position index: " + path);
+        }
+        long games = header.getLong(8);
+        long positionRecords = header.getLong(16);
+        long start = HEADER;
+        offsets = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            games * 8);
+        start += games * 8;
+        positions = new Postings(channel, start, positionRecords);
+        start += positionRecords * RECORD;
+        material = new Postings(channel, start, header.getLong(24));
+    }
+
+    /**
+     * @return the number of games indexed
+     */
+    public int gameCount() {
+        return offsets.capacity() / 8;
+    }
+
+    /**
+     * @param game a game number from 0 to gameCount() - 1
+     * @return the byte offset of the game in the PGN file
+     */
+    public long gameOffset(int game) {
+        return offsets.getLong(game * 8);
+    }
+
+    /**
+     * @param position a position
+     * @return the numbers of the games that reached position, in order
+     */
+    public int[] gamesWith(Position position) {
+        return positions.games(position.key());
+    }
+
+    /**
+     * @param materialKey a material signature, see Position.materialKey
+     * @return the numbers of the games that at some point had exactly that
+     *         material on the board, in order
+     */
+    public int[] gamesWithMaterial(long materialKey) {
+        return material.games(materialKey);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Replays every game of a PGN file and writes the index. Keys are
+     * collected into primitive arrays, about twelve bytes per position, and
+     * sorted once when the index is written.
+     */
+    public static final class Builder {
+
+        private long[] gameOffsets = new long[1024];
+        private int gameCount;
+        private long[] positionKeys = new long[1 << 16];
+        private int[] positionGames = new int[1 << 16];
+        private int positionCount;
+        private long[] materialKeys = new long[1 << 12];
+        private int[] materialGames = new int[1 << 12];
+        private int materialCount;
+        private long rejected;
+        // the keys of the game being added, before duplicates are removed
+        private long[] scratch = new long[256];
+        private long[] scratchMaterial = new long[256];
+
+        /**
+         * Adds every game of a mapped PGN file. Games that cannot be
+         * replayed are reported on System.err, counted in rejected() and
+         * added without positions, so every game keeps its number.
+         *
+         * @param pgn the PGN file
+         * @throws IOException if a game cannot be read
+         */
+        public void addAll(MappedPgnFile pgn) throws IOException {
+            for (int i = 0; i < pgn.gameCount(); i++) {
+                try {
+                    add(pgn.movetext(i), pgn.gameOffset(i));
+                } catch (IllegalArgumentException e) {
+                    System.err.format("game %d rejected: %s%n", gameCount,
+                        e.getMessage());
+                    addOffset(pgn.gameOffset(i));
+                    gameCount++;
+                    rejected++;
+                }
+            }
+        }
+
+        /**
+         * @return the number of games addAll could not replay
+         */
+        public long rejected() {
+            return rejected;
+        }
+
+        /**
+         * Replays one game and records every position it reaches, the
+         * starting position included. Nothing is recorded if a move cannot
+         * be played.
+         *
+         * @param game the PGN text of a game, or just its movetext
+         * @param offset the game's byte offset in the PGN file
+         * @throws IllegalArgumentException if a move cannot be played
+         */
+        public void add(CharSequence game, long offset) {
+            Position position = new Position();
+            int plies = 0;
+            scratch[0] = position.key();
+            scratchMaterial[0] = position.materialKey();
+            PgnLexer lexer = new PgnLexer(game);
+            for (PgnLexer.Token t = lexer.next(); t != PgnLexer.Token.END;
+                t = lexer.next()) {
+                if (t == PgnLexer.Token.MOVE && lexer.depth() == 0) {
+                    position.playSan(lexer.text(), lexer.start(), lexer.end());
+                    if (++plies == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, plies * 2);
+                        scratchMaterial = Arrays.copyOf(scratchMaterial,
+                            plies * 2);
+                    }
+                    scratch[plies] = position.key();
+                    scratchMaterial[plies] = position.materialKey();
+                }
+            }
+            addOffset(offset);
+            Arrays.sort(scratch, 0, plies + 1);
+            Arrays.sort(scratchMaterial, 0, plies + 1);
+            for (int i = 0; i <= plies; i++) {
+                if (i == 0 || scratch[i] != scratch[i - 1]) {
+                    addPosition(scratch[i]);
+                }
+                if (i == 0 || scratchMaterial[i] != scratchMaterial[i - 1]) {
+                    addMaterial(scratchMaterial[i]);
+                }
+            }
+            gameCount++;
+        }
+
+        private void addOffset(long offset) {
+            if (gameCount == gameOffsets.length) {
+                gameOffsets = Arrays.copyOf(gameOffsets, gameCount * 2);
+            }
+            gameOffsets[gameCount] = offset;
+        }
+
+        private void addPosition(long key) {
+            if (positionCount == positionKeys.length) {
+                positionKeys = Arrays.copyOf(positionKeys, positionCount * 2);
+                positionGames = Arrays.copyOf(positionGames,
+                    positionCount * 2);
+            }
+            positionKeys[positionCount] = key;
+            positionGames[positionCount++] = gameCount;
+        }
+
+        private void addMaterial(long key) {
+            if (materialCount == materialKeys.length) {
+                materialKeys = Arrays.copyOf(materialKeys, materialCount * 2);
+                materialGames = Arrays.copyOf(materialGames,
+                    materialCount * 2);
+            }
+            materialKeys[materialCount] = key;
+            materialGames[materialCount++] = gameCount;
+        }
+
+        /**
+         * Sorts the posting lists and writes the index to path.
+         *
+         * @param path where the index is written
+         * @throws IOException if the file cannot be written
+         */
+        public void write(Path path) throws IOException {
+            KeySort.sort(positionKeys, positionGames, positionCount);
+            KeySort.sort(materialKeys, materialGames, materialCount);
+            try (FileChannel out = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD * 4096);
+                buffer.putLong(MAGIC).putLong(gameCount)
+                    .putLong(positionCount).putLong(materialCount);
+                for (int i = 0; i < gameCount; i++) {
+                    if (buffer.remaining() < 8) {
+                        drain(buffer, out);
+                    }
+                    buffer.putLong(gameOffsets[i]);
+                }
+                writeRecords(buffer, out, positionKeys, positionGames,
+                    positionCount);
+                writeRecords(buffer, out, materialKeys, materialGames,
+                    materialCount);
+                drain(buffer, out);
+            }
+        }
+
+        private static void writeRecords(ByteBuffer buffer, FileChannel out,
+            long[] keys, int[] games, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < RECORD) {
+                    drain(buffer, out);
+                }
+                buffer.putLong(keys[i]).putInt(games[i]);
+            }
+        }
+
+        private static void drain(ByteBuffer buffer, FileChannel out)
+            throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3 || !(args[0].equals("build") && args.length == 3
+            || (args[0].equals("fen") || args[0].equals("material"))
+            && args.length >= 4)) {
+            System.err.println("Usage: java PositionIndex build index-file"
+                + " pgn-file");
+            System.err.println("       java PositionIndex fen index-file"
+                + " pgn-file fen");
+            System.err.println("       java PositionIndex material"
+                + " index-file pgn-file signature");
+            System.exit(2);
+        }
+        try {
+            if (args[0].equals("build")) {
+                Builder builder = new Builder();
+                try (MappedPgnFile pgn = new MappedPgnFile(
+                    Paths.get(args[2]))) {
+                    builder.addAll(pgn);
+                }
+                builder.write(Paths.get(args[1]));
+                return;
+            }
+            try (PositionIndex index = new PositionIndex(Paths.get(args[1]));
+                FileChannel pgn = FileChannel.open(Paths.get(args[2]),
+                    StandardOpenOption.READ)) {
+                String query = String.join(" ",
+                    Arrays.copyOfRange(args, 3, args.length));
+                long start = System.nanoTime();
+                int[] games = args[0].equals("fen")
+                    ? index.gamesWith(new Position(query))
+                    : index.gamesWithMaterial(Position.materialKey(query));
+                long micros = (System.nanoTime() - start) / 1000;
+                for (int game : games) {
+                    printGame(index, pgn, game);
+                }
+                System.out.format("%d games in %d us%n", games.length,
+                    micros);
+            }
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        }
+    }
+
+    /*
+    printGame seeks to one game in the PGN file and prints its number,
+    offset, players and result. Only that game is read.
+    */
+    private static void printGame(PositionIndex index, FileChannel pgn,
+        int game) throws IOException {
+        long offset = index.gameOffset(game);
+        pgn.position(offset);
+        PgnGameReader reader = new PgnGameReader(pgn);
+        PgnTags tags = PgnTags.parse(reader.next());
+        System.out.format("game %d @ %d: %s - %s %s%n", game, offset,
+            tags.value("White"), tags.value("Black"), tags.value("Result"));
+    }
+}
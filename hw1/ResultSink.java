@@ -0,0 +1,42 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where a batch run sends its GameResults. A sink is handed whole chunks of
+ * results at a time and is free to buffer them; nothing is guaranteed to
+ * have reached its destination until flush or close returns.
+ *
+ * Sinks are not thread-safe. Wrap a sink in an AsyncSink to take the
+ * writing off the thread that produces the results.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public interface ResultSink extends Closeable {
+
+    /**
+     * @param result the result to write
+     * @throws IOException if the result cannot be written
+     */
+    void write(GameResult result) throws IOException;
+
+    /**
+     * Writes a chunk of results in order.
+     *
+     * @param results the results to write
+     * @throws IOException if a result cannot be written
+     */
+    default void writeAll(List<GameResult> results) throws IOException {
+        for (GameResult result : results) {
+            write(result);
+        }
+    }
+
+    /**
+     * Pushes everything written so far to its destination.
+     *
+     * @throws IOException if it cannot be written
+     */
+    void flush() throws IOException;
+}
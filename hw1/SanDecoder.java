@@ -0,0 +1,218 @@
+/**
+ * Decodes a move in Standard Algebraic Notation straight from a range of
+ * characters, such as a MOVE token of a PgnLexer, into a descriptor packed
+ * into an int. Nothing is allocated, so no String or substring has to be
+ * made for each move of a replay.
+ *
+ * The descriptor says what the text says and nothing more: which piece
+ * moves where, what disambiguation was given and which markers were
+ * present. Finding the piece that actually moves is up to
+ * Position.playSan.
+ *
+ * <pre>
+ * bits  0-5   target square (0 = a1 ... 63 = h8)
+ * bits  6-8   piece type, Position.PAWN to Position.KING
+ * bits  9-12  origin file 0-7, or 8 if not given
+ * bits 13-16  origin rank 0-7, or 8 if not given
+ * bit  17     capture marker ('x' or ':')
+ * bits 18-20  promotion piece type, or 7 for none
+ * bit  21     check marker ('+')
+ * bit  22     mate marker ('#')
+ * bit  23     castles kingside
+ * bit  24     castles queenside
+ * </pre>
+ *
+ * @see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c8.2.3
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class SanDecoder {
+
+    /**
+     * Returned for text that is not a readable move.
+     */
+    public static final int INVALID = -1;
+
+    private static final int NONE = 8;
+    private static final int NO_PROMOTION = 7;
+    private static final int CAPTURE = 1 << 17;
+    private static final int CHECK = 1 << 21;
+    private static final int MATE = 1 << 22;
+    private static final int KINGSIDE = 1 << 23;
+    private static final int QUEENSIDE = 1 << 24;
+
+    private SanDecoder() {
+    }
+
+    /**
+     * @param text the text holding the move
+     * @param start the index of the move's first char
+     * @param end the index after the move's last char
+     * @return the move's descriptor, or INVALID if it cannot be read
+     */
+    public static int decode(CharSequence text, int start, int end) {
+        int flags = 0;
+        while (end > start) {
+            char c = text.charAt(end - 1);
+            if (c == '+') {
+                flags |= CHECK;
+            } else if (c == '#') {
+                flags |= MATE;
+            } else if (c != '!' && c != '?') {
+                break;
+            }
+            end--;
+        }
+        if (isCastle(text, start, end)) {
+            boolean queenside = end - start == 5;
+            return (queenside ? QUEENSIDE : KINGSIDE) | flags
+                | (Position.KING << 6) | (NONE << 9) | (NONE << 13)
+                | (NO_PROMOTION << 18);
+        }
+        int type = Position.PAWN;
+        if (end > start) {
+            int piece = "NBRQK".indexOf(text.charAt(start));
+            if (piece >= 0) {
+                type = Position.KNIGHT + piece;
+                start++;
+            }
+        }
+        int promotion = NO_PROMOTION;
+        if (type == Position.PAWN && end > start) {
+            int piece = "NBRQ".indexOf(text.charAt(end - 1));
+            if (piece >= 0) {
+                promotion = Position.KNIGHT + piece;
+                end--;
+                if (end > start && text.charAt(end - 1) == '=') {
+                    end--;
+                }
+            }
+        }
+        if (end - start < 2) {
+            return INVALID;
+        }
+        int toFile = text.charAt(end - 2) - 'a';
+        int toRank = text.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return INVALID;
+        }
+        int fromFile = NONE;
+        int fromRank = NONE;
+        for (int i = start; i < end - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c == 'x' || c == ':') {
+                flags |= CAPTURE;
+            } else if (c != '-') {
+                return INVALID;
+            }
+        }
+        return (toRank * 8 + toFile) | (type << 6) | (fromFile << 9)
+            | (fromRank << 13) | (promotion << 18) | flags;
+    }
+
+    // O-O and O-O-O, also written with zeros
+    private static boolean isCastle(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length != 3 && length != 5) {
+            return false;
+        }
+        char o = text.charAt(start);
+        if (o != 'O' && o != '0') {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != (((i - start) % 2 == 0) ? o : '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return the square the piece moves to; for castling, unspecified
+     */
+    public static int target(int san) {
+        return san & 63;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return the type of piece that moves
+     */
+    public static int piece(int san) {
+        return (san >>> 6) & 7;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return the file the piece moves from, 0 to 7, or -1 if not given
+     */
+    public static int fromFile(int san) {
+        int file = (san >>> 9) & 15;
+        return (file == NONE) ? -1 : file;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return the rank the piece moves from, 0 to 7, or -1 if not given
+     */
+    public static int fromRank(int san) {
+        int rank = (san >>> 13) & 15;
+        return (rank == NONE) ? -1 : rank;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return true if the move is marked as a capture
+     */
+    public static boolean isCapture(int san) {
+        return (san & CAPTURE) != 0;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return the piece type promoted to, or Position.EMPTY
+     */
+    public static int promotion(int san) {
+        int type = (san >>> 18) & 7;
+        return (type == NO_PROMOTION) ? Position.EMPTY : type;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return true if the move is marked as check or mate
+     */
+    public static boolean isCheck(int san) {
+        return (san & (CHECK | MATE)) != 0;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return true if the move is marked as mate
+     */
+    public static boolean isMate(int san) {
+        return (san & MATE) != 0;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return true if the move castles, either way
+     */
+    public static boolean isCastle(int san) {
+        return (san & (KINGSIDE | QUEENSIDE)) != 0;
+    }
+
+    /**
+     * @param san a descriptor
+     * @return true if the move castles queenside
+     */
+    public static boolean isQueensideCastle(int san) {
+        return (san & QUEENSIDE) != 0;
+    }
+}
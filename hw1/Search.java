@@ -0,0 +1,487 @@
+import java.util.Arrays;
+
+/**
+ * Chooses a move by iterative-deepening alpha-beta search. Each iteration
+ * searches one ply deeper than the last, until the time runs out, and the
+ * move of the last completed iteration is played.
+ *
+ * Most of the speed comes from searching good moves first, since alpha-beta
+ * prunes more the earlier the best move is tried. At every node the move
+ * stored in the TranspositionTable comes first, then captures ordered most
+ * valuable victim / least valuable attacker (MVV-LVA), then the two killer
+ * moves that last caused a cutoff at the same ply, then the remaining quiet
+ * moves by their history score. At the horizon a quiescence search plays
+ * out captures, so a position is never scored in the middle of an exchange.
+ *
+ * The whole tree is walked on one Position with makeMove and unmakeMove,
+ * and move lists are preallocated per ply, so a search allocates nothing.
+ * A Search is not thread-safe; give each thread its own, or use a
+ * ParallelSearch to run several on one table.
+ *
+ * Scores are in centipawns from the side to move's point of view. Mate
+ * scores are MATE minus the number of plies to mate.
+ *
+ * Usage: java Search [--time ms] [--depth d] [--hash mb] [--threads n] fen
+ *
+ * @see https://www.chessprogramming.org/Alpha-Beta
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public class Search {
+
+    /**
+     * The score of being mated right now; mate in n plies scores
+     * MATE - n.
+     */
+    public static final int MATE = 30000;
+
+    /**
+     * The deepest a search ever goes, quiescence included.
+     */
+    public static final int MAX_PLY = 128;
+
+    private static final int INFINITY = 32000;
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+
+    // piece values in centipawns, by type, for ordering captures
+    private static final int[] VALUES = {100, 320, 330, 500, 900, 0};
+
+    // move ordering scores, highest first
+    private static final int TT_MOVE = 1 << 30;
+    private static final int GOOD_CAPTURE = 1 << 24;
+    private static final int KILLER = 1 << 22;
+
+    private TranspositionTable table;
+    // 0 for a search of its own, else its helper number in a ParallelSearch
+    private int helper;
+    private Position position = new Position();
+    private int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private int[][] orders = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private int[][] killers = new int[MAX_PLY][2];
+    private int[][] history = new int[12][64];
+    private PawnTable pawns = new PawnTable(1 << 14);
+
+    private long nodes;
+    private long deadline;
+    private boolean stopped;
+    // set from another thread to end the search early
+    volatile boolean aborted;
+    private int rootMove;
+    private int chosenMove;
+    private int chosenScore;
+    private int completedDepth;
+
+    /**
+     * Creates a Search that stores what it learns in table. Searches of
+     * positions from the same game are faster with a table kept between
+     * them.
+     *
+     * @param table the transposition table
+     */
+    public Search(TranspositionTable table) {
+        this(table, 0);
+    }
+
+    /*
+    A helper of a ParallelSearch. Odd helpers search every depth one ply
+    deeper than the main thread, so the threads spread over two depths and
+    fill the table with different parts of the tree.
+    */
+    Search(TranspositionTable table, int helper) {
+        this.table = table;
+        this.helper = helper;
+    }
+
+    /**
+     * @param fen the position to search, in FEN
+     * @param timeMillis how long to search for
+     * @return the best move found, packed as in Move, or Move.NONE if the
+     *         side to move is mated or stalemated
+     * @throws IllegalArgumentException if fen cannot be read
+     */
+    public int bestMove(String fen, long timeMillis) {
+        return bestMove(new Position(fen), timeMillis, MAX_PLY - 1);
+    }
+
+    /**
+     * Searches until timeMillis have passed or maxDepth is completed,
+     * whichever comes first. At least depth 1 is always completed.
+     *
+     * @param root the position to search; it is not changed
+     * @param timeMillis how long to search for
+     * @param maxDepth the deepest iteration to run, 1 to MAX_PLY - 1
+     * @return the best move found, or Move.NONE if there is no legal move
+     */
+    public int bestMove(Position root, long timeMillis, int maxDepth) {
+        if (helper == 0) {
+            table.newSearch();
+        }
+        position.copyFrom(root);
+        nodes = 0;
+        stopped = false;
+        deadline = System.currentTimeMillis() + timeMillis;
+        chosenMove = Move.NONE;
+        chosenScore = 0;
+        completedDepth = 0;
+        for (int[] k : killers) {
+            k[0] = Move.NONE;
+            k[1] = Move.NONE;
+        }
+        for (int[] h : history) {
+            Arrays.fill(h, 0);
+        }
+        // mated or stalemated: no iteration could find a move
+        if (MoveGenerator.legalMoves(position, moves[0]) == 0) {
+            chosenScore = position.inCheck() ? -MATE : 0;
+            return chosenMove;
+        }
+        for (int depth = 1 + (helper & 1);
+            depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+            int score = search(depth, 0, -INFINITY, INFINITY);
+            if (stopped) {
+                break;
+            }
+            chosenScore = score;
+            chosenMove = rootMove;
+            completedDepth = depth;
+            if (Math.abs(score) >= MATE_BOUND) {
+                break;
+            }
+        }
+        return chosenMove;
+    }
+
+    /**
+     * @return the score of the last search's best move
+     */
+    public int score() {
+        return chosenScore;
+    }
+
+    /**
+     * @return the deepest iteration the last search completed
+     */
+    public int depth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return the number of nodes the last search visited, quiescence
+     *         nodes included
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the pawn structure cache this search evaluates with; it is
+     *         kept from one search to the next
+     */
+    public PawnTable pawnTable() {
+        return pawns;
+    }
+
+    /*
+    search is negamax alpha-beta with a principal variation search: after the
+    first move, moves are searched with a null window that only proves they
+    are no better, and searched again with the full window if they are.
+    */
+    private int search(int depth, int ply, int alpha, int beta) {
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        if ((++nodes & 2047) == 0) {
+            checkTime();
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (ply > 0 && (position.halfmoveClock() >= 100
+            || position.isRepetition())) {
+            return 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(position, pawns);
+        }
+        long key = position.key();
+        long entry = table.probe(key);
+        int ttMove = TranspositionTable.move(entry);
+        if (ply > 0 && entry != 0 && TranspositionTable.depth(entry) >= depth) {
+            int score = fromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                || bound == TranspositionTable.LOWER && score >= beta
+                || bound == TranspositionTable.UPPER && score <= alpha) {
+                return score;
+            }
+        }
+        boolean inCheck = position.inCheck();
+        if (inCheck) {
+            depth++;
+        }
+        int[] list = moves[ply];
+        int count = MoveGenerator.legalMoves(position, list);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        order(list, count, ply, ttMove);
+        int bestScore = -INFINITY;
+        int best = Move.NONE;
+        int originalAlpha = alpha;
+        for (int i = 0; i < count; i++) {
+            int move = next(list, count, ply, i);
+            position.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -search(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                score = -search(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta) {
+                    score = -search(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+                if (ply == 0) {
+                    rootMove = move;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                }
+                if (alpha >= beta) {
+                    if (!Move.isCapture(move)) {
+                        rememberCutoff(move, ply, depth);
+                    }
+                    break;
+                }
+            }
+        }
+        int bound = (bestScore >= beta) ? TranspositionTable.LOWER
+            : (bestScore > originalAlpha) ? TranspositionTable.EXACT
+            : TranspositionTable.UPPER;
+        table.store(key, best, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /*
+    checkTime stops the search once it is aborted or the deadline has
+    passed, but never for the deadline before the first iteration is
+    complete, so there is always a move to play.
+    */
+    private void checkTime() {
+        if (aborted || completedDepth > 0
+            && System.currentTimeMillis() > deadline) {
+            stopped = true;
+        }
+    }
+
+    /*
+    quiesce searches captures and queen promotions only, until the position
+    is quiet. The side to move may also stand pat, i.e. take the static
+    score, since it is never forced to capture. In check every evasion is
+    searched instead, so mates at the horizon are still seen.
+    */
+    private int quiesce(int ply, int alpha, int beta) {
+        if ((++nodes & 2047) == 0) {
+            checkTime();
+        }
+        if (stopped) {
+            return 0;
+        }
+        boolean inCheck = position.inCheck();
+        if (ply >= MAX_PLY - 1) {
+            return inCheck ? 0 : Evaluation.evaluate(position, pawns);
+        }
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            bestScore = Evaluation.evaluate(position, pawns);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            if (bestScore > alpha) {
+                alpha = bestScore;
+            }
+        }
+        int[] list = moves[ply];
+        int count = MoveGenerator.legalMoves(position, list);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        if (!inCheck) {
+            int tactical = 0;
+            for (int i = 0; i < count; i++) {
+                int move = list[i];
+                if (Move.isCapture(move)
+                    || Move.promotionType(move) == Position.QUEEN) {
+                    list[tactical++] = move;
+                }
+            }
+            count = tactical;
+        }
+        order(list, count, ply, Move.NONE);
+        for (int i = 0; i < count; i++) {
+            int move = next(list, count, ply, i);
+            position.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                }
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    /*
+    order gives every move an ordering score. Captures score by MVV-LVA:
+    the victim's value dominates and a cheaper attacker breaks ties.
+    */
+    private void order(int[] list, int count, int ply, int ttMove) {
+        int[] scores = orders[ply];
+        int[] killer = killers[ply];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int piece = position.pieceAt(Move.from(move));
+            if (move == ttMove) {
+                scores[i] = TT_MOVE;
+            } else if (Move.isCapture(move) || Move.isPromotion(move)) {
+                int victim = position.pieceAt(Move.to(move));
+                int gain = (victim == Position.EMPTY) ? VALUES[Position.PAWN]
+                    : VALUES[victim % 6];
+                if (Move.isPromotion(move) && !Move.isCapture(move)) {
+                    gain = 0;
+                }
+                int promotion = Move.promotionType(move);
+                if (promotion != Position.EMPTY) {
+                    gain += VALUES[promotion];
+                }
+                scores[i] = GOOD_CAPTURE + gain * 8 - piece % 6;
+            } else if (move == killer[0]) {
+                scores[i] = KILLER + 1;
+            } else if (move == killer[1]) {
+                scores[i] = KILLER;
+            } else {
+                scores[i] = history[piece][Move.to(move)];
+            }
+        }
+    }
+
+    /*
+    next swaps the best scored move of list[i..count) into place i and
+    returns it. Picking one move at a time is cheaper than sorting, since a
+    cutoff often comes after the first move or two.
+    */
+    private int next(int[] list, int count, int ply, int i) {
+        int[] scores = orders[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int score = scores[best];
+        scores[best] = scores[i];
+        scores[i] = score;
+        return move;
+    }
+
+    /*
+    rememberCutoff records a quiet move that failed high as a killer for its
+    ply and credits its history score, more for deeper cutoffs. History is
+    halved when it grows large so it keeps below the killer scores.
+    */
+    private void rememberCutoff(int move, int ply, int depth) {
+        int[] killer = killers[ply];
+        if (killer[0] != move) {
+            killer[1] = killer[0];
+            killer[0] = move;
+        }
+        int[] counts = history[position.pieceAt(Move.from(move))];
+        counts[Move.to(move)] += depth * depth;
+        if (counts[Move.to(move)] >= KILLER) {
+            for (int[] h : history) {
+                for (int sq = 0; sq < 64; sq++) {
+                    h[sq] /= 2;
+                }
+            }
+        }
+    }
+
+    /*
+    toTable and fromTable convert mate scores between "mate in n plies from
+    the root", as the search uses them, and "mate in n plies from this
+    position", as they must be stored for the entry to be valid wherever the
+    position is reached.
+    */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score + ply;
+        }
+        return (score <= -MATE_BOUND) ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score - ply;
+        }
+        return (score <= -MATE_BOUND) ? score + ply : score;
+    }
+
+    public static void main(String[] args) {
+        long time = 5000;
+        int depth = MAX_PLY - 1;
+        int hash = 64;
+        int threads = 1;
+        int i = 0;
+        while (i < args.length - 1 && args[i].startsWith("--")) {
+            if (args[i].equals("--time")) {
+                time = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--depth")) {
+                depth = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--hash")) {
+                hash = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else {
+                break;
+            }
+            i += 2;
+        }
+        if (i >= args.length) {
+            System.err.println("Usage: java Search [--time ms] [--depth d]"
+                + " [--hash mb] [--threads n] fen");
+            System.exit(2);
+        }
+        String fen = String.join(" ",
+            Arrays.copyOfRange(args, i, args.length));
+        TranspositionTable table = new TranspositionTable(hash);
+        ParallelSearch search = new ParallelSearch(table, threads);
+        long start = System.nanoTime();
+        int move = search.bestMove(new Position(fen), time, depth);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        search.shutdown();
+        System.out.format("bestmove %s score %d depth %d nodes %d"
+            + " %.3f s %.0f nps hashfull %d pawn hits %.1f%%%n",
+            (move == Move.NONE) ? "(none)" : Move.toString(move),
+            search.score(), search.depth(), search.nodes(), seconds,
+            search.nodes() / Math.max(seconds, 1e-9), table.hashfull(),
+            search.pawnHitRate() * 100);
+    }
+}
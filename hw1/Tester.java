@@ -0,0 +1,809 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/*
+Tester - checks the PGN readers, the Position they replay games on and the
+tools built on both, using small positions and files written to a temporary
+directory. Run with assertions enabled: java -ea Tester
+*/
+
+public class Tester {
+
+    // white's third move takes the black king, which a lax replay allowed
+    // and which then crashed it
+    private static final String KING_CAPTURE =
+        "1. e4 d6 2. Bb5 a6 3. Bxe8 Nd7 4. a3 Nf6 *";
+
+    // the positions of Perft's suite, which between them have castling on
+    // both sides, en passant and promotions with and without capture
+    private static final String[] PERFT_FENS = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"};
+
+    public static void main(String[] args) throws IOException {
+        testUnclosedInnerBrace();
+        testNonAsciiTags();
+        testConvertedTags();
+        testBatchTags();
+        testAsyncSinkFailure();
+        testOpeningTreeSkipsBadGames();
+        testPositionIndexSkipsBadGames();
+        testFenNeedsBothKings();
+        testFenDropsUnusableCastling();
+        testIncrementalKeys();
+        testUnmakeRestores();
+        testSanDecoder();
+        testIncrementalEvaluation();
+        testEvaluationSymmetry();
+        testTranspositionReplacement();
+        testTranspositionTornEntry();
+        testTranspositionHashfull();
+        testPawnTable();
+        testSearchWithoutMoves();
+        testIllegalSanRejected();
+        testBatchSkipsBadGames();
+        testConverterSkipsBadGames();
+        testBinaryGameChecksMoves();
+        System.out.println("All tests passed");
+    }
+
+    /*
+    Brace comments do not nest, so "{ a { b }" is one whole comment and the
+    games after it must still be found, by both readers.
+    */
+    public static void testUnclosedInnerBrace() throws IOException {
+        Path pgn = write("[Event \"One\"]\n\n1. e4 e5 *\n\n"
+            + "[Event \"Two\"]\n\n1. e4 { a { b } e5 *\n\n"
+            + "[Event \"Three\"]\n\n1. d4 d5 *\n");
+        List<String> streamed = new ArrayList<>();
+        try (PgnGameReader games = PgnGameReader.open(pgn)) {
+            games.forEachRemaining(streamed::add);
+        }
+        assert streamed.size() == 3 : "streamed " + streamed.size();
+        try (MappedPgnFile mapped = new MappedPgnFile(pgn)) {
+            assert mapped.gameCount() == 3 : "mapped " + mapped.gameCount();
+            for (int i = 0; i < 3; i++) {
+                assert mapped.game(i).toString().equals(streamed.get(i))
+                    : "game " + i + " differs";
+            }
+            assert !mapped.movetext(1).toString().contains("d4");
+            assert PgnReader.finalFen(mapped.game(2).toString())
+                .startsWith("rnbqkbnr/ppp1pppp/8/3p4/3P4/");
+        }
+        Files.delete(pgn);
+    }
+
+    /*
+    Tags are UTF-8, so a name like "Müller" must come out of --mmap exactly
+    as it comes out of the streaming reader.
+    */
+    public static void testNonAsciiTags() throws IOException {
+        Path pgn = write("[Event \"Café\"]\n[White \"Müller\"]\n"
+            + "[Black \"Šarić\"]\n\n1. e4 e5 *\n");
+        PrintStream out = System.out;
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        ByteArrayOutputStream mapped = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(streamed, true,
+                StandardCharsets.UTF_8));
+            PgnReader.main(new String[] {pgn.toString()});
+            System.setOut(new PrintStream(mapped, true,
+                StandardCharsets.UTF_8));
+            PgnReader.main(new String[] {"--mmap", pgn.toString()});
+        } finally {
+            System.setOut(out);
+        }
+        String text = streamed.toString(StandardCharsets.UTF_8);
+        assert text.contains("White: Müller") : text;
+        assert text.equals(mapped.toString(StandardCharsets.UTF_8))
+            : mapped.toString(StandardCharsets.UTF_8);
+        try (MappedPgnFile file = new MappedPgnFile(pgn)) {
+            assert file.tags(0).value("Black").equals("Šarić");
+            assert file.tagValue(0, "Black").equals("Šarić");
+        }
+        Files.delete(pgn);
+    }
+
+    /*
+    PgnConverter reads games through a mapping too, so the tags it writes to
+    the binary file must be the UTF-8 ones.
+    */
+    public static void testConvertedTags() throws IOException {
+        Path pgn = write("[White \"Müller\"]\n\n1. e4 e5 *\n");
+        String out = pgn.toString() + ".out";
+        new PgnConverter(1, 8, out, List.of(pgn)).run();
+        Path bin = Path.of(out + ".bin");
+        try (BinaryGameReader games = BinaryGameReader.open(bin)) {
+            BinaryGame game = games.next();
+            assert game.tag("White").equals("Müller") : game.tag("White");
+            assert game.plies() == 2;
+        }
+        Files.delete(pgn);
+        Files.delete(bin);
+        Files.delete(Path.of(out + ".idx"));
+    }
+
+    /*
+    PgnBatch must write the same CSV whether it streams or maps the file.
+    */
+    public static void testBatchTags() throws IOException {
+        Path pgn = write("[White \"Müller\"]\n\n1. e4 e5 *\n");
+        Path streamed = Files.createTempFile("tester", ".csv");
+        Path mapped = Files.createTempFile("tester", ".csv");
+        PgnBatch.main(new String[] {"--format", "csv", "--out",
+            streamed.toString(), pgn.toString()});
+        PgnBatch.main(new String[] {"--mmap", "--format", "csv", "--out",
+            mapped.toString(), pgn.toString()});
+        String text = Files.readString(streamed);
+        assert text.contains("Müller") : text;
+        assert text.equals(Files.readString(mapped))
+            : Files.readString(mapped);
+        Files.delete(pgn);
+        Files.delete(streamed);
+        Files.delete(mapped);
+    }
+
+    /*
+    A RuntimeException in the sink behind an AsyncSink must not kill its
+    writer thread: producers must not block, and the failure must come
+    back from flush.
+    */
+    public static void testAsyncSinkFailure() throws IOException {
+        ResultSink broken = new ResultSink() {
+            @Override
+            public void write(GameResult result) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        GameResult result = GameResult.of(0, "1. e4 *", new FenWriter());
+        AsyncSink sink = new AsyncSink(broken, 1);
+        boolean thrown = false;
+        try {
+            for (int i = 0; i < 10000; i++) {
+                sink.write(result);
+            }
+            sink.flush();
+        } catch (IOException e) {
+            thrown = e.getCause() instanceof IllegalStateException;
+        }
+        assert thrown;
+        try {
+            sink.close();
+            assert false : "close did not report the failure";
+        } catch (IOException e) {
+            assert e.getCause() instanceof IllegalStateException;
+        }
+    }
+
+    /*
+    Builder skips a game it cannot replay, and does not replay past
+    maxPlies, so a bad move after that does not matter.
+    */
+    public static void testOpeningTreeSkipsBadGames() throws IOException {
+        OpeningTree.Builder builder = new OpeningTree.Builder(2);
+        assert builder.add("1. e4 e5 2. Nf3 1-0");
+        assert !builder.add("1. e4 Ke3 0-1");
+        assert builder.add("1. e4 c5 2. Ke8 1/2-1/2");
+        assert builder.rejected() == 1;
+        OpeningTree.Builder deep = new OpeningTree.Builder(100);
+        assert !deep.add(KING_CAPTURE);
+        assert deep.add("1. d4 d5 *");
+        assert deep.rejected() == 1;
+        Path path = Files.createTempFile("tester", ".tree");
+        assert builder.write(path) == 3;
+        try (OpeningTree tree = new OpeningTree(path)) {
+            OpeningTree.Entry[] entries = tree.lookup(new Position());
+            assert entries.length == 1;
+            assert entries[0].games() == 2;
+            assert entries[0].whiteWins() == 1 && entries[0].draws() == 1;
+            assert entries[0].blackWins() == 0;
+        }
+        Files.delete(path);
+    }
+
+    /*
+    A game PositionIndex cannot replay keeps its number, so the games after
+    it are still numbered as in MappedPgnFile.
+    */
+    public static void testPositionIndexSkipsBadGames() throws IOException {
+        Path pgn = write("[Event \"One\"]\n\n1. e4 e5 *\n\n"
+            + "[Event \"Two\"]\n\n1. e4 Ke3 *\n\n"
+            + "[Event \"Three\"]\n\n1. d4 d5 *\n\n"
+            + "[Event \"Four\"]\n\n" + KING_CAPTURE + "\n\n"
+            + "[Event \"Five\"]\n\n1. c4 *\n");
+        Path path = Files.createTempFile("tester", ".idx");
+        PositionIndex.Builder builder = new PositionIndex.Builder();
+        try (MappedPgnFile mapped = new MappedPgnFile(pgn)) {
+            builder.addAll(mapped);
+            builder.write(path);
+            assert builder.rejected() == 2;
+            try (PositionIndex index = new PositionIndex(path)) {
+                assert index.gameCount() == 5;
+                for (int i = 0; i < 5; i++) {
+                    assert index.gameOffset(i) == mapped.gameOffset(i);
+                }
+                assert Arrays.equals(index.gamesWith(new Position()),
+                    new int[] {0, 2, 4});
+                Position d4 = new Position();
+                d4.playSan("d4");
+                assert Arrays.equals(index.gamesWith(d4), new int[] {2});
+            }
+        }
+        Files.delete(pgn);
+        Files.delete(path);
+    }
+
+    /*
+    Move generation looks the king up by square, so a FEN without exactly
+    one king per side is refused up front.
+    */
+    public static void testFenNeedsBothKings() {
+        String[] fens = {"8/8/8/8/8/8/8/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/8 b - - 0 1",
+            "4k3/8/8/8/8/8/8/3KK3 w - - 0 1"};
+        for (String fen : fens) {
+            boolean thrown = false;
+            try {
+                new Position(fen);
+            } catch (IllegalArgumentException e) {
+                thrown = true;
+            }
+            assert thrown : fen;
+        }
+        assert new Position("4k3/8/8/8/8/8/8/4K3 w - - 0 1")
+            .kingSquare(Position.BLACK) == 60;
+    }
+
+    /*
+    A castling right in a FEN whose rook or king is missing from its home
+    square is dropped, so MoveGenerator never castles with an empty corner.
+    */
+    public static void testFenDropsUnusableCastling() {
+        Position position = new Position(
+            "r3k3/8/8/8/8/8/8/R3K3 w KQkq - 0 1");
+        assert position.castlingRights()
+            == (Position.WHITE_QUEENSIDE | Position.BLACK_QUEENSIDE);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legalMoves(position, moves);
+        for (int i = 0; i < count; i++) {
+            assert Move.flags(moves[i]) != Move.KING_CASTLE;
+        }
+        position.playSan("O-O-O");
+        assert new FenWriter().fen(position)
+            .equals("r3k3/8/8/8/8/8/8/2KR4 b q - 1 1");
+        position = new Position("r3k2r/8/8/8/8/8/8/R2K3R w KQkq - 0 1");
+        assert position.castlingRights()
+            == (Position.BLACK_KINGSIDE | Position.BLACK_QUEENSIDE);
+    }
+
+    /*
+    With no legal move at the root there is nothing to deepen, so Search
+    must return at once instead of iterating to MAX_PLY.
+    */
+    public static void testSearchWithoutMoves() {
+        Search search = new Search(new TranspositionTable(1));
+        assert search.bestMove("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1", 10000)
+            == Move.NONE;
+        assert search.depth() == 0 && search.score() == 0;
+        assert search.bestMove("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1", 10000)
+            == Move.NONE;
+        assert search.score() == -Search.MATE;
+    }
+
+    /*
+    playSan must refuse every move that is not legal, leaving the position
+    as it was, rather than corrupt the board or lose a king.
+    */
+    public static void testIllegalSanRejected() {
+        assertRejected("1. O-O *", "Illegal move: O-O");
+        assertRejected("1. e4 d6 2. Bb5 a6 3. Bxe8 Nd7 *",
+            "Illegal move: a6");
+        assertRejected("1. d4 e6 2. e3 Bb4+ 3. Nf3 *", "Illegal move: Nf3");
+        assertRejected("1. e4 e5 2. Qh5 Nc6 3. Qxf7+ Ke7 *",
+            "Illegal move: Ke7");
+        assertRejected("1. e4=Q *", "Illegal move: e4=Q");
+        String fen = "4k3/P7/8/8/8/8/8/1N2KN2 w - - 0 1";
+        Position position = new Position(fen);
+        for (String san : new String[] {"a8", "Nd2", "Ke2=Q", "Kxe8"}) {
+            boolean thrown = false;
+            try {
+                position.playSan(san);
+            } catch (IllegalArgumentException e) {
+                thrown = true;
+            }
+            assert thrown : san;
+            assert new FenWriter().fen(position).equals(fen) : san;
+        }
+        position.playSan("Nbd2");
+        assert new FenWriter().placement(position)
+            .equals("4k3/P7/8/8/8/8/3N4/4KN2");
+        position = new Position(fen);
+        position.playSan("a8=Q+");
+        assert position.pieceAt(56) == Position.QUEEN;
+    }
+
+    /*
+    A game that once crashed the replay must be reported and skipped, and
+    the batch must go on to the good game after it, in both modes.
+    */
+    public static void testBatchSkipsBadGames() throws IOException {
+        String good = "1. e4 e5 *";
+        Path pgn = write("[Event \"Bad\"]\n\n"
+            + "1. e4 d6 2. Bb5 a6 3. Bxe8 Nd7 4. a3 Nf6 *\n\n"
+            + "[Event \"Good\"]\n\n" + good + "\n");
+        PgnBatch batch = new PgnBatch(2, 1);
+        try {
+            List<String> streamed = new ArrayList<>();
+            try (PgnGameReader games = PgnGameReader.open(pgn)) {
+                batch.replay(games, streamed::add);
+            }
+            assert streamed.equals(List.of(PgnReader.finalFen(good)))
+                : streamed;
+            assert batch.rejected() == 1;
+            List<String> mapped = new ArrayList<>();
+            try (MappedPgnFile file = new MappedPgnFile(pgn)) {
+                batch.replay(file, mapped::add);
+            }
+            assert mapped.equals(streamed) : mapped;
+            assert batch.rejected() == 2;
+        } finally {
+            batch.shutdown();
+        }
+        Files.delete(pgn);
+    }
+
+    /*
+    PgnConverter checks every move, so a game with an illegal one is left
+    out of the binary file and the games around it are still written.
+    */
+    public static void testConverterSkipsBadGames() throws IOException {
+        Path pgn = write("[White \"A\"]\n\n1. e4 e5 2. Nf3 Nc6 *\n\n"
+            + "[White \"B\"]\n\n"
+            + "1. e4 d6 2. Bb5 a6 3. Bxe8 Nd7 4. a3 Nf6 *\n\n"
+            + "[White \"C\"]\n\n1. O-O *\n\n"
+            + "[White \"D\"]\n\n1. Nf3 Nf6 2. g3 g6 3. Bg2 Bg7 4. O-O *\n");
+        String out = pgn.toString() + ".out";
+        new PgnConverter(2, 1, out, List.of(pgn)).run();
+        Path bin = Path.of(out + ".bin");
+        List<String> written = new ArrayList<>();
+        try (BinaryGameReader games = BinaryGameReader.open(bin)) {
+            while (games.hasNext()) {
+                BinaryGame game = games.next();
+                written.add(game.tag("White") + game.plies());
+            }
+        }
+        assert written.equals(List.of("A4", "D7")) : written;
+        assert Files.size(Path.of(out + ".idx")) == 16;
+        Files.delete(pgn);
+        Files.delete(bin);
+        Files.delete(Path.of(out + ".idx"));
+    }
+
+    /*
+    BinaryGame.fromPgn replays to check every move, so illegal games must
+    not be encoded.
+    */
+    public static void testBinaryGameChecksMoves() {
+        String[] games = {"1. e4 d6 2. Bb5 a6 3. Bxe8 Nd7 4. a3 Nf6 *",
+            "1. O-O *"};
+        for (String game : games) {
+            boolean thrown = false;
+            try {
+                BinaryGame.fromPgn(game);
+            } catch (IllegalArgumentException e) {
+                thrown = true;
+            }
+            assert thrown : game;
+        }
+        BinaryGame game = BinaryGame.fromPgn("1. e4 e5 2. Nf3 Nc6 *");
+        assert game.plies() == 4;
+        assert new FenWriter().fen(game.replay())
+            .equals(PgnReader.finalFen("1. e4 e5 2. Nf3 Nc6 *"));
+    }
+
+    /*
+    The keys Position updates move by move must equal the keys of the same
+    position built from scratch out of its FEN, after every move of the
+    perft trees.
+    */
+    public static void testIncrementalKeys() {
+        FenWriter writer = new FenWriter();
+        boolean[] seen = new boolean[16];
+        for (String fen : PERFT_FENS) {
+            walk(new Position(fen), 3, (position, move) -> {
+                seen[Move.flags(move)] = true;
+                Position fresh = new Position(writer.fen(position));
+                assert position.key() == fresh.key() : writer.fen(position);
+                assert position.pawnKey() == fresh.pawnKey()
+                    : writer.fen(position);
+            });
+        }
+        assert seen[Move.KING_CASTLE] && seen[Move.QUEEN_CASTLE];
+        assert seen[Move.EN_PASSANT];
+        assert seen[Move.PROMOTION] && seen[Move.PROMOTION | Move.CAPTURE];
+    }
+
+    /*
+    unmakeMove must restore everything makeMove changed, exactly. Besides
+    the perft suite, a position where rooks take rooks on their corners
+    checks that castling rights lost to a capture come back.
+    */
+    public static void testUnmakeRestores() {
+        boolean[] seen = new boolean[16];
+        boolean[] lostRights = new boolean[1];
+        List<String> fens = new ArrayList<>(List.of(PERFT_FENS));
+        fens.add("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        for (String fen : fens) {
+            assertUnmakeRestores(new Position(fen), 3, seen, lostRights);
+        }
+        assert seen[Move.KING_CASTLE] && seen[Move.QUEEN_CASTLE];
+        assert seen[Move.EN_PASSANT];
+        assert seen[Move.PROMOTION | Move.CAPTURE | 3];
+        assert lostRights[0];
+    }
+
+    private static void assertUnmakeRestores(Position position, int depth,
+        boolean[] seen, boolean[] lostRights) {
+        FenWriter writer = new FenWriter();
+        String fen = writer.fen(position);
+        long key = position.key();
+        long pawnKey = position.pawnKey();
+        int phase = position.phase();
+        int middlegame = position.middlegameScore();
+        int endgame = position.endgameScore();
+        int rights = position.castlingRights();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legalMoves(position, moves);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int victim = position.pieceAt(Move.to(move));
+            position.makeMove(move);
+            seen[Move.flags(move)] = true;
+            if (victim % 6 == Position.ROOK
+                && position.castlingRights() != rights) {
+                lostRights[0] = true;
+            }
+            if (depth > 1) {
+                assertUnmakeRestores(position, depth - 1, seen, lostRights);
+            }
+            position.unmakeMove();
+            String name = fen + " " + Move.toString(move);
+            assert writer.fen(position).equals(fen) : name;
+            assert position.key() == key && position.pawnKey() == pawnKey
+                : name;
+            assert position.phase() == phase : name;
+            assert position.middlegameScore() == middlegame : name;
+            assert position.endgameScore() == endgame : name;
+        }
+    }
+
+    /*
+    SanDecoder reports what the text says: disambiguation, promotion,
+    castling and markers, or INVALID for text that is not a move.
+    */
+    public static void testSanDecoder() {
+        int san = decode("Nbd7");
+        assert SanDecoder.piece(san) == Position.KNIGHT;
+        assert SanDecoder.target(san) == 51;
+        assert SanDecoder.fromFile(san) == 1 && SanDecoder.fromRank(san) == -1;
+        assert !SanDecoder.isCapture(san) && !SanDecoder.isCheck(san);
+        san = decode("R1e2");
+        assert SanDecoder.piece(san) == Position.ROOK;
+        assert SanDecoder.fromFile(san) == -1 && SanDecoder.fromRank(san) == 0;
+        san = decode("Qh4xe1");
+        assert SanDecoder.target(san) == 4 && SanDecoder.isCapture(san);
+        assert SanDecoder.fromFile(san) == 7 && SanDecoder.fromRank(san) == 3;
+        san = decode("exd8=Q+");
+        assert SanDecoder.piece(san) == Position.PAWN;
+        assert SanDecoder.target(san) == 59 && SanDecoder.fromFile(san) == 4;
+        assert SanDecoder.promotion(san) == Position.QUEEN;
+        assert SanDecoder.isCapture(san) && SanDecoder.isCheck(san);
+        assert !SanDecoder.isMate(san);
+        san = decode("e8Q");
+        assert SanDecoder.promotion(san) == Position.QUEEN;
+        assert SanDecoder.target(san) == 60;
+        san = decode("b1=N#");
+        assert SanDecoder.promotion(san) == Position.KNIGHT;
+        assert SanDecoder.isMate(san) && SanDecoder.isCheck(san);
+        san = decode("e4!?");
+        assert SanDecoder.target(san) == 28 && !SanDecoder.isCheck(san);
+        assert SanDecoder.promotion(san) == Position.EMPTY;
+        for (String castle : new String[] {"O-O", "0-0", "O-O+"}) {
+            san = decode(castle);
+            assert SanDecoder.isCastle(san) : castle;
+            assert !SanDecoder.isQueensideCastle(san) : castle;
+            assert SanDecoder.piece(san) == Position.KING : castle;
+        }
+        for (String castle : new String[] {"O-O-O", "0-0-0!?"}) {
+            assert SanDecoder.isQueensideCastle(decode(castle)) : castle;
+        }
+        assert SanDecoder.isCheck(decode("O-O+"));
+        for (String bad : new String[] {"Nz9", "e9", "", "+", "O-O-", "Kx",
+            "N@f3", "i4"}) {
+            assert decode(bad) == SanDecoder.INVALID : bad;
+        }
+        assert SanDecoder.decode("12. Nf3 Nc6", 4, 7) == decode("Nf3");
+    }
+
+    /*
+    The piece-square sums and phase Position keeps up to date must equal a
+    recount over all 64 squares, after every move of a game and of the
+    perft trees.
+    */
+    public static void testIncrementalEvaluation() {
+        Position game = new Position();
+        assertRecount(game);
+        String moves = "e4 e5 Nf3 Nc6 Bb5 a6 Bxc6 dxc6 O-O f6 d4 exd4 Nxd4 "
+            + "c5 Nb3 Qxd1 Rxd1 Bg4 f3 Be6 Nc3 Bd6 Be3 O-O-O Kf2 g5";
+        for (String san : moves.split(" ")) {
+            game.playSan(san);
+            assertRecount(game);
+        }
+        for (String fen : PERFT_FENS) {
+            walk(new Position(fen), 2, (position, move) ->
+                assertRecount(position));
+        }
+    }
+
+    private static void assertRecount(Position position) {
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.pieceAt(sq);
+            if (piece != Position.EMPTY) {
+                middlegame += Evaluation.MIDDLEGAME[piece][sq];
+                endgame += Evaluation.ENDGAME[piece][sq];
+                phase += Evaluation.PHASE[piece % 6];
+            }
+        }
+        String fen = new FenWriter().fen(position);
+        assert position.middlegameScore() == middlegame : fen;
+        assert position.endgameScore() == endgame : fen;
+        assert position.phase() == phase : fen;
+    }
+
+    /*
+    Swapping the colors of every piece and mirroring the board top to bottom
+    gives white what black had. With the same side to move, the evaluation
+    must change sign; a mirroring error in the tables would break this.
+    */
+    public static void testEvaluationSymmetry() {
+        assert Evaluation.evaluate(new Position()) == 0;
+        List<String> fens = new ArrayList<>(List.of(PERFT_FENS));
+        fens.add("rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq -"
+            + " 1 2");
+        for (String fen : fens) {
+            Position position = new Position(fen);
+            Position flipped = new Position(flip(fen));
+            assert flipped.middlegameScore() == -position.middlegameScore()
+                : fen;
+            assert flipped.endgameScore() == -position.endgameScore() : fen;
+            assert flipped.phase() == position.phase() : fen;
+            assert Evaluation.evaluate(flipped)
+                == -Evaluation.evaluate(position) : fen;
+            assert Evaluation.evaluate(flipped, new PawnTable(16))
+                == -Evaluation.evaluate(position, new PawnTable(16)) : fen;
+        }
+    }
+
+    // the same position with the colors swapped, keeping the side to move
+    private static String flip(String fen) {
+        String[] fields = fen.split(" ");
+        String[] ranks = fields[0].split("/");
+        StringBuilder placement = new StringBuilder();
+        for (int i = ranks.length - 1; i >= 0; i--) {
+            placement.append(swapCase(ranks[i]));
+            if (i > 0) {
+                placement.append('/');
+            }
+        }
+        fields[0] = placement.toString();
+        fields[2] = swapCase(fields[2]);
+        if (!fields[3].equals("-")) {
+            fields[3] = fields[3].charAt(0) + (fields[3].charAt(1) == '3'
+                ? "6" : "3");
+        }
+        return String.join(" ", fields);
+    }
+
+    private static String swapCase(String text) {
+        StringBuilder result = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            result.append(Character.isUpperCase(c) ? Character.toLowerCase(c)
+                : Character.toUpperCase(c));
+        }
+        return result.toString();
+    }
+
+    /*
+    Keys that differ only above the bucket index share a bucket. Once it is
+    full, a store evicts the shallowest entry, with each generation of age
+    counting as eight plies less.
+    */
+    public static void testTranspositionReplacement() {
+        TranspositionTable table = new TranspositionTable(1);
+        long[] keys = new long[7];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 5L | (long) (i + 1) << 40;
+        }
+        int[] depths = {4, 2, 6, 8};
+        for (int i = 0; i < 4; i++) {
+            table.store(keys[i], Move.of(12, 28, Move.QUIET), 10 * i,
+                depths[i], TranspositionTable.EXACT);
+        }
+        table.store(keys[4], Move.NONE, 0, 1, TranspositionTable.LOWER);
+        assert table.probe(keys[1]) == 0;
+        for (int i : new int[] {0, 2, 3, 4}) {
+            assert table.probe(keys[i]) != 0 : i;
+        }
+        long data = table.probe(keys[2]);
+        assert TranspositionTable.depth(data) == 6;
+        assert TranspositionTable.score(data) == 20;
+        assert TranspositionTable.bound(data) == TranspositionTable.EXACT;
+        assert TranspositionTable.move(data) == Move.of(12, 28, Move.QUIET);
+        // a shallower bound for the same key in the same search is ignored
+        table.store(keys[3], Move.NONE, -5, 2, TranspositionTable.UPPER);
+        assert TranspositionTable.depth(table.probe(keys[3])) == 8;
+        // one search later the old depth 1 entry is still the least worth
+        table.newSearch();
+        table.store(keys[5], Move.NONE, 0, 3, TranspositionTable.EXACT);
+        assert table.probe(keys[4]) == 0 && table.probe(keys[5]) != 0;
+        // two searches later the depth 3 entry of the last search is worth
+        // more than the depth 4 one from three searches ago
+        table.newSearch();
+        table.store(keys[6], Move.NONE, 0, 1, TranspositionTable.EXACT);
+        assert table.probe(keys[0]) == 0;
+        assert table.probe(keys[5]) != 0 && table.probe(keys[6]) != 0;
+        // an existing entry is updated in place, keeping its move
+        table.store(keys[2], Move.NONE, -30, 9, TranspositionTable.LOWER);
+        data = table.probe(keys[2]);
+        assert TranspositionTable.depth(data) == 9;
+        assert TranspositionTable.score(data) == -30;
+        assert TranspositionTable.move(data) == Move.of(12, 28, Move.QUIET);
+        assert table.probe(keys[3]) != 0;
+    }
+
+    /*
+    An entry is stored as key ^ data beside data, so if either word changes,
+    as when two threads write the same slot at once, the entry no longer
+    verifies and probe reports nothing rather than another position's data.
+    */
+    public static void testTranspositionTornEntry() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x123456789abcdefL;
+        table.store(key, Move.NONE, 42, 5, TranspositionTable.EXACT);
+        assert TranspositionTable.score(table.probe(key)) == 42;
+        long[] words = tableWords(table);
+        int slot = 0;
+        while (words[slot + 1] == 0) {
+            slot += 2;
+        }
+        words[slot + 1] ^= 1L << 32;
+        assert table.probe(key) == 0;
+        words[slot + 1] ^= 1L << 32;
+        words[slot] ^= 1L << 16;
+        assert table.probe(key) == 0;
+    }
+
+    private static long[] tableWords(TranspositionTable table) {
+        try {
+            java.lang.reflect.Field field =
+                TranspositionTable.class.getDeclaredField("table");
+            field.setAccessible(true);
+            return (long[]) field.get(table);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+    hashfull samples the first thousand entries and counts only those of
+    the current search.
+    */
+    public static void testTranspositionHashfull() {
+        TranspositionTable table = new TranspositionTable(1);
+        assert table.hashfull() == 0;
+        for (long key = 0; key < 250; key++) {
+            table.store(key, Move.NONE, 0, 1, TranspositionTable.EXACT);
+        }
+        assert table.hashfull() == 250 : table.hashfull();
+        table.newSearch();
+        assert table.hashfull() == 0;
+        table.store(0, Move.NONE, 0, 1, TranspositionTable.EXACT);
+        assert table.hashfull() == 1;
+        table.clear();
+        assert table.hashfull() == 0 && table.probe(1) == 0;
+    }
+
+    /*
+    Pawn scores worked out by hand. The c-pawns are doubled and isolated and
+    the d7 pawn stops both from being passed; the d5 pawn is passed and
+    defended by e4, which earns it only the plain passed pawn bonus. The
+    second and fourth probes see pawn structures already in the table, the
+    last after a king move that leaves the pawn key unchanged.
+    */
+    public static void testPawnTable() {
+        PawnTable table = new PawnTable(1024);
+        String doubled = "4k3/3p4/8/8/8/2P5/2P5/4K3 w - - 0 1";
+        String passer = "4k3/p7/8/3P4/4P3/8/8/4K3 w - - 0 1";
+        int slot = table.probe(new Position(doubled));
+        assert table.middlegame(slot) == -10 - 20 + 10;
+        assert table.endgame(slot) == -20 - 30 + 15;
+        assert table.passed(slot) == 0L;
+        assert table.hits() == 0;
+        assert table.probe(new Position(doubled)) == slot;
+        assert table.hits() == 1 && table.probes() == 2;
+        slot = table.probe(new Position(passer));
+        assert table.middlegame(slot) == 25 + 15 + 10 - 5;
+        assert table.endgame(slot) == 60 + 35 + 15 - 10;
+        assert table.passed(slot) == (1L << 35 | 1L << 28 | 1L << 48);
+        slot = table.probe(new Position("4k3/p7/8/3P4/4P3/8/8/3K4 b - - 1 1"));
+        assert table.middlegame(slot) == 45 && table.endgame(slot) == 100;
+        assert table.hits() == 2 && table.hitRate() == 0.5;
+        // the same structures with the colors swapped score the other way
+        PawnTable flipped = new PawnTable(1024);
+        for (String fen : new String[] {doubled, passer}) {
+            int a = table.probe(new Position(fen));
+            int b = flipped.probe(new Position(flip(fen)));
+            assert flipped.middlegame(b) == -table.middlegame(a) : fen;
+            assert flipped.endgame(b) == -table.endgame(a) : fen;
+        }
+    }
+
+    private static int decode(String san) {
+        return SanDecoder.decode(san, 0, san.length());
+    }
+
+    /*
+    walk makes every legal move to depth plies, calling check after each
+    move is made, and unmakes them again.
+    */
+    private static void walk(Position position, int depth,
+        BiConsumer<Position, Integer> check) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.legalMoves(position, moves);
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            check.accept(position, moves[i]);
+            if (depth > 1) {
+                walk(position, depth - 1, check);
+            }
+            position.unmakeMove();
+        }
+    }
+
+    private static void assertRejected(String game, String message) {
+        try {
+            PgnReader.finalFen(game);
+            assert false : game;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals(message) : e.getMessage();
+        }
+    }
+
+    private static Path write(String text) throws IOException {
+        Path path = Files.createTempFile("tester", ".pgn");
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+/**
+ * A transposition table: a hash table from Zobrist key to what a search has
+ * learned about a position, namely its best move, its score, how deep it
+ * was searched and whether the score is exact or only a bound. A position
+ * reached again by another move order is then looked up instead of being
+ * searched again.
+ *
+ * The table is one long[] allocated when it is created and never resized,
+ * so searching allocates nothing and the memory used is known up front.
+ * Each entry is two longs, the key XORed with the data and the data packed
+ * as
+ *
+ * <pre>
+ * bits  0-15  best move, packed as in Move, or Move.NONE
+ * bits 16-31  score, as a signed 16-bit value
+ * bits 32-39  depth in plies
+ * bits 40-41  bound: EXACT, LOWER or UPPER
+ * bits 42-47  the generation (search number) that stored it
+ * </pre>
+ *
+ * An entry whose data is 0 is empty, since every stored entry has a bound.
+ *
+ * Entries are grouped in buckets of four, 64 bytes, which is one cache line
+ * on most machines, and a key may go in any entry of its bucket. When the
+ * bucket is full, the entry replaced is the one least worth keeping: the
+ * shallowest, with entries left over from earlier searches counting as
+ * shallower the older they are. Deep results of the current search thus
+ * survive, while stale ones make room instead of filling the table.
+ *
+ * Many threads may probe and store at once without locking. Two threads
+ * storing to the same slot can leave the key of one entry beside the data
+ * of the other, but storing the key as key ^ data makes such a torn entry
+ * fail to match either key, so a probe never returns data that belongs to
+ * a different position. At worst an entry is lost.
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class TranspositionTable {
+
+    /**
+     * The score is the exact score of the position.
+     */
+    public static final int EXACT = 1;
+
+    /**
+     * The score is a lower bound: the search failed high.
+     */
+    public static final int LOWER = 2;
+
+    /**
+     * The score is an upper bound: the search failed low.
+     */
+    public static final int UPPER = 3;
+
+    private static final int BUCKET = 4;
+    // how many plies of depth one generation of age is worth
+    private static final int AGE_WEIGHT = 8;
+
+    private long[] table;
+    private int mask;
+    // written only by the thread that starts each search; a helper that
+    // reads a stale value just stores a slightly older generation
+    private int generation;
+
+    /**
+     * Creates a TranspositionTable of at most the given size. The number of
+     * buckets is the largest power of two that fits.
+     *
+     * @param megabytes the size of the table, at least 1
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("megabytes must be positive");
+        }
+        long buckets = Long.highestOneBit((long) megabytes << 20 >>> 6);
+        buckets = Math.min(buckets, 1L << 27);
+        table = new long[(int) buckets * BUCKET * 2];
+        mask = (int) buckets - 1;
+    }
+
+    /**
+     * Starts a new generation. Call it once before each search, so entries
+     * from earlier searches are the first to be replaced.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 63;
+    }
+
+    /**
+     * @param key a Zobrist key
+     * @return the data stored for key, or 0 if there is none
+     */
+    public long probe(long key) {
+        int base = ((int) key & mask) * BUCKET * 2;
+        for (int i = base; i < base + BUCKET * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores what a search found for a position. An entry for the same
+     * position is replaced unless it was searched deeper in this search;
+     * otherwise the bucket's least valuable entry is.
+     *
+     * @param key the position's Zobrist key
+     * @param move the best move found, or Move.NONE
+     * @param score the score, between Short.MIN_VALUE and Short.MAX_VALUE
+     * @param depth the depth searched, 0 to 255
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = ((int) key & mask) * BUCKET * 2;
+        int victim = base;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET * 2; i += 2) {
+            long old = table[i + 1];
+            if (old != 0 && (table[i] ^ old) == key) {
+                if (depth < depth(old) && bound != EXACT
+                    && generation(old) == generation) {
+                    return;
+                }
+                if (move == Move.NONE) {
+                    move = move(old);
+                }
+                victim = i;
+                break;
+            }
+            int worth = (old == 0) ? Integer.MIN_VALUE : depth(old)
+                - AGE_WEIGHT * ((generation - generation(old)) & 63);
+            if (worth < lowest) {
+                lowest = worth;
+                victim = i;
+            }
+        }
+        long data = (move & 0xffffL) | (score & 0xffffL) << 16
+            | (long) depth << 32 | (long) bound << 40
+            | (long) generation << 42;
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    /**
+     * Empties the table, e.g. before analysing an unrelated game.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * @return roughly how full the table is with entries of the current
+     *         generation, in entries per thousand
+     */
+    public int hashfull() {
+        int used = 0;
+        int sample = Math.min(1000, table.length / 2);
+        for (int i = 0; i < sample; i++) {
+            long data = table[i * 2 + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    /**
+     * @param data data returned by probe
+     * @return the best move stored, or Move.NONE
+     */
+    public static int move(long data) {
+        return (int) (data & 0xffff);
+    }
+
+    /**
+     * @param data data returned by probe
+     * @return the score stored
+     */
+    public static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    /**
+     * @param data data returned by probe
+     * @return the depth the score was searched to
+     */
+    public static int depth(long data) {
+        return (int) ((data >>> 32) & 0xff);
+    }
+
+    /**
+     * @param data data returned by probe
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long data) {
+        return (int) ((data >>> 40) & 3);
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> 42) & 63);
+    }
+}
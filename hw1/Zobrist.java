@@ -0,0 +1,68 @@
+/**
+ * The random numbers behind Position's 64-bit Zobrist keys. A position's key
+ * is the xor of one number for each piece on its square, one for the
+ * castling rights, one for the en passant file and one if black is to move,
+ * so a move only has to xor out what it changes and xor in what replaces it.
+ *
+ * The numbers come from a fixed seed, so the same position has the same key
+ * in every run and keys can be stored on disk.
+ *
+ * @see https://www.chessprogramming.org/Zobrist_Hashing
+ *
+ * @author ajds6
+ * @version 1.0
+ */
+public final class Zobrist {
+
+    /**
+     * PIECES[piece][square], with pieces numbered as in Position.
+     */
+    public static final long[][] PIECES = new long[12][64];
+    /**
+     * CASTLING[rights] for every combination of Position's castling bits.
+     */
+    public static final long[] CASTLING = new long[16];
+    /**
+     * EP_FILE[file] for an en passant square on that file.
+     */
+    public static final long[] EP_FILE = new long[8];
+    public static final long BLACK_TO_MOVE;
+
+    private static long seed = 0x1331C0FFEEL;
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                PIECES[piece][sq] = next();
+            }
+        }
+        // each right gets its own number and combinations xor them, so
+        // losing one right is a single xor whatever else is held
+        long[] rights = {next(), next(), next(), next()};
+        for (int i = 0; i < 16; i++) {
+            for (int bit = 0; bit < 4; bit++) {
+                if ((i & (1 << bit)) != 0) {
+                    CASTLING[i] ^= rights[bit];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EP_FILE[file] = next();
+        }
+        BLACK_TO_MOVE = next();
+    }
+
+    private Zobrist() {
+    }
+
+    /*
+    next is SplitMix64, written out so the sequence never depends on the
+    JDK's choice of generator.
+    */
+    private static long next() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
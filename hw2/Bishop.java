@@ -6,6 +6,9 @@
  */
 public class Bishop extends Piece {
 
+    private static final Square[][] MOVES =
+        movesTable(Bishop::computeMovesFrom);
+
     /**
      * Creates a Bishop with all required parameters.
      *
@@ -31,6 +34,10 @@ public class Bishop extends Piece {
 
     @Override
     public Square[] movesFrom(Square square) {
+        return lookup(MOVES, square);
+    }
+
+    private static Square[] computeMovesFrom(Square square) {
         String strPossibleMoves = "";
         char file = square.toString().charAt(0);
         char rank = square.toString().charAt(1);
@@ -73,7 +80,7 @@ public class Bishop extends Piece {
             String[] arrPossibleMoves = strPossibleMoves.trim().split(" ");
             result = new Square[arrPossibleMoves.length];
             for (int i = 0; i < arrPossibleMoves.length; i++) {
-                result[i] = new Square(arrPossibleMoves[i]);
+                result[i] = Square.of(arrPossibleMoves[i]);
             }
         }
         return result;
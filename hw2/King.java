@@ -6,6 +6,9 @@
  */
 public class King extends Piece {
 
+    private static final Square[][] MOVES =
+        movesTable(King::computeMovesFrom);
+
     /**
      * Creates a King with all required parameters.
      *
@@ -31,6 +34,10 @@ public class King extends Piece {
 
     @Override
     public Square[] movesFrom(Square square) {
+        return lookup(MOVES, square);
+    }
+
+    private static Square[] computeMovesFrom(Square square) {
         Square[] stub = new Square[0]; //stub value
         String strPossibleMoves = "";
         char file = square.toString().charAt(0);
@@ -84,7 +91,7 @@ public class King extends Piece {
             String[] arrPossibleMoves = strPossibleMoves.trim().split(" ");
             result = new Square[arrPossibleMoves.length];
             for (int i = 0; i < arrPossibleMoves.length; i++) {
-                result[i] = new Square(arrPossibleMoves[i]);
+                result[i] = Square.of(arrPossibleMoves[i]);
             }
         }
         return result;
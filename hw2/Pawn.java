@@ -6,6 +6,11 @@
  */
 public class Pawn extends Piece {
 
+    private static final Square[][] WHITE_MOVES =
+        movesTable(s -> computeMovesFrom(s, Color.WHITE));
+    private static final Square[][] BLACK_MOVES =
+        movesTable(s -> computeMovesFrom(s, Color.BLACK));
+
     /**
      * Creates a Pawn with all required parameters.
      *
@@ -31,11 +36,19 @@ public class Pawn extends Piece {
 
     @Override
     public Square[] movesFrom(Square square) {
+        if (this.getColor() == (Color.WHITE)) {
+            return lookup(WHITE_MOVES, square);
+        } else {
+            return lookup(BLACK_MOVES, square);
+        }
+    }
+
+    private static Square[] computeMovesFrom(Square square, Color color) {
         String strPossibleMoves = "";
         char file = square.toString().charAt(0);
         char rank = square.toString().charAt(1);
         Square[] result = new Square[0];
-        if (this.getColor() == (Color.WHITE)) {
+        if (color == (Color.WHITE)) {
             if (rank + 1 <= '8') {
                 if (rank == '2') {
                     char adjRank = (char) (rank + 1);
@@ -64,7 +77,7 @@ public class Pawn extends Piece {
             String[] arrPossibleMoves = strPossibleMoves.trim().split(" ");
             result = new Square[arrPossibleMoves.length];
             for (int i = 0; i < arrPossibleMoves.length; i++) {
-                result[i] = new Square(arrPossibleMoves[i]);
+                result[i] = Square.of(arrPossibleMoves[i]);
             }
         }
         return result;
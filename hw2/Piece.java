@@ -1,3 +1,5 @@
+import java.util.function.Function;
+
 /**
  * Represents chess pieces (Note: Pawns are called pieces as well.)
  *
@@ -7,6 +9,8 @@
 
 public abstract class Piece {
 
+    private static final Square[] NO_MOVES = new Square[0];
+
     private Color color;
 
     /**
@@ -36,9 +40,44 @@ public abstract class Piece {
     public abstract String algebraicName();
 
     /**
+     * Subclasses answer this from a table built when the class is loaded, so
+     * the returned array is shared between calls and must not be modified.
+     * A square off the board has no moves, and gives an empty array.
+     *
      * @param square the Square that the piece moves from.
      * @return a Square[] containg all the squares the piece could move to from
      * square on a chess board containing only the piece.
      */
     public abstract Square[] movesFrom(Square square);
+
+    /**
+     * Runs moves once for each of the 64 squares and keeps the results, so
+     * the String building in a subclass's move calculation only ever happens
+     * at class-load time.
+     *
+     * @param moves calculates the squares reachable from a square
+     * @return a table of the results indexed by Square.index()
+     */
+    protected static Square[][] movesTable(Function<Square, Square[]> moves) {
+        Square[][] table = new Square[64][];
+        for (int i = 0; i < 64; i++) {
+            char file = (char) ('a' + (i % 8));
+            char rank = (char) ('1' + (i / 8));
+            table[i] = moves.apply(Square.of(file, rank));
+        }
+        return table;
+    }
+
+    /**
+     * Looks square up in a table built by movesTable.
+     *
+     * @param table the table to look in
+     * @param square the Square that the piece moves from
+     * @return the table's entry for square, or an empty array if square is
+     * off the board
+     */
+    protected static Square[] lookup(Square[][] table, Square square) {
+        int index = square.index();
+        return (index < 0) ? NO_MOVES : table[index];
+    }
 }
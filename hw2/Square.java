@@ -7,8 +7,18 @@
 
 public class Square {
 
+    private static final Square[] SQUARES = new Square[64];
+
+    static {
+        for (int i = 0; i < 64; i++) {
+            SQUARES[i] = new Square((char) ('a' + (i % 8)),
+                (char) ('1' + (i / 8)));
+        }
+    }
+
     private char file;
     private char rank;
+    private int index;
     private String squareName;
 
     /**
@@ -20,7 +30,12 @@ public class Square {
     public Square(char file, char rank) {
         this.file = file;
         this.rank = rank;
-        squareName = "" + file + rank;
+        index = indexOf(file, rank);
+        if (index >= 0 && SQUARES[index] != null) {
+            squareName = SQUARES[index].squareName;
+        } else {
+            squareName = "" + file + rank;
+        }
     }
 
     /**
@@ -33,6 +48,50 @@ public class Square {
         this(name.charAt(0), name.charAt(1));
     }
 
+    /**
+     * Returns the shared instance for a square instead of creating a new one.
+     *
+     * @param file the column of the square, from 'a' to 'h'
+     * @param rank the row of the square, from '1' to '8'
+     * @return the canonical Square for file and rank
+     * @throws IllegalArgumentException if the square is not on the board
+     */
+    public static Square of(char file, char rank) {
+        int index = indexOf(file, rank);
+        if (index < 0) {
+            throw new IllegalArgumentException("No such square: " + file
+                + rank);
+        }
+        return SQUARES[index];
+    }
+
+    /**
+     * @param name a String representation of the square name, e.g. "e4"
+     * @return the canonical Square with that name
+     * @throws IllegalArgumentException if the square is not on the board
+     */
+    public static Square of(String name) {
+        if (name.length() != 2) {
+            throw new IllegalArgumentException("No such square: " + name);
+        }
+        return of(name.charAt(0), name.charAt(1));
+    }
+
+    private static int indexOf(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+        return (file - 'a') + 8 * (rank - '1');
+    }
+
+    /**
+     * @return the square's position on the board, from 0 (a1) to 63 (h8),
+     *         counting along each rank first
+     */
+    public int index() {
+        return index;
+    }
+
     /**
      * @return a String representation of the square name
      */
@@ -58,4 +117,13 @@ public class Square {
         Square s = (Square) other;
         return ((this.file == s.file) && (this.rank == s.rank));
     }
+
+    /**
+     * @return the square's index for squares on the board, so the 64 squares
+     *         never collide, and a value built from file and rank otherwise
+     */
+    @Override
+    public int hashCode() {
+        return (index >= 0) ? index : 31 * file + rank;
+    }
 }
@@ -15,6 +15,13 @@ public class Tester {
         Square h8 = new Square("h8");
         assert a1.equals(otherA1);
         assert !a1.equals(h8);
+        assert a1.hashCode() == otherA1.hashCode();
+        assert Square.of("a1") == Square.of('a', '1');
+        assert Square.of("h8").index() == 63;
+        assert knight.movesFrom(Square.of("f6"))
+            == knight.movesFrom(new Square("f6"));
+        assert knight.movesFrom(new Square('z', '9')).length == 0;
+        assert new Pawn(Color.WHITE).movesFrom(new Square("i2")).length == 0;
 
         System.out.println(a1.toString());
         System.out.println(otherA1.toString());